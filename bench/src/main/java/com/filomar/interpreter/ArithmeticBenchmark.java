@@ -0,0 +1,60 @@
+package com.filomar.interpreter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+//Interpreter.visitBinaryExpr over literal operands, one operator and one pair of operand types per run
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ArithmeticBenchmark {
+    @Param({"PLUS", "MINUS", "STAR", "SLASH", "LESS", "EQUAL_EQUAL"})
+    String operator;
+
+    @Param({"integer", "double", "mixed", "string"})
+    String operands;
+
+    private Interpreter interpreter;
+    private Expr.Binary expression;
+
+    @Setup
+    public void setup() {
+        interpreter = new FlexContext(OutputStream.nullOutputStream(), OutputStream.nullOutputStream()).interpreter;
+
+        Object left;
+        Object right;
+        switch (operands) {
+            case "integer" -> { left = 1234L; right = 56L; }
+            case "double" -> { left = 12.34; right = 5.6; }
+            case "mixed" -> { left = 1234L; right = 5.6; }
+            default -> { left = "flex"; right = "script"; }
+        }
+        TokenType type = TokenType.valueOf(operator);
+        Token token = new Token(type, type.name(), null, 1, 1);
+        expression = new Expr.Binary(new Expr.Literal(left), token, new Expr.Literal(right));
+    }
+
+    @Benchmark
+    public Object binary() {
+        try {
+            return interpreter.visitBinaryExpr(expression);
+        } catch (RuntimeError error) { //strings only support + and ==, the failing path is measured as is
+            return error;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.filomar.interpreter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+//Sources shared by the benchmarks: the repository scripts, packaged as resources, and a generated program of any size
+final class BenchmarkSources {
+    //Fields
+    static final String SYNTHETIC = "synthetic";
+    static final ErrorReporter FAIL = (line, column, message) -> {
+        throw new IllegalStateException("[" + line + ":" + column + "] " + message);
+    };
+
+    //Constructors
+    private BenchmarkSources() {}
+
+    //Methods
+    static String load(String name, int size) {
+        if (name.equals(SYNTHETIC)) return synthetic(size);
+        try (InputStream in = BenchmarkSources.class.getResourceAsStream("/scripts/" + name + ".flx")) {
+            if (in == null) throw new IllegalArgumentException("Unknown script " + name);
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static List<Token> scan(String source) {
+        return new Scanner(source, FAIL).scanTokens();
+    }
+
+    //Every construct the front end knows about, repeated with distinct names, about 20 lines per unit
+    static String synthetic(int units) {
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < units; i++) {
+            source.append("fun f").append(i).append("(n) {\n")
+                    .append("    var total = 0;\n")
+                    .append("    for (var j = 0; j < n; j = j + 1) {\n")
+                    .append("        if (j % 3 == 0 and j > ").append(i).append(") total = total + j * ").append(i).append(";\n")
+                    .append("        else total = total - 1;\n")
+                    .append("    }\n")
+                    .append("    return total;\n")
+                    .append("}\n")
+                    .append("class C").append(i).append(" {\n")
+                    .append("    init(x) { this.x = x; }\n")
+                    .append("    scaled(k) { return this.x * k + ").append(i).append(".5; }\n")
+                    .append("}\n")
+                    .append("var v").append(i).append(" = f").append(i).append("(10) + C").append(i).append("(").append(i).append(").scaled(2);\n")
+                    .append("var s").append(i).append(" = \"item\" + ").append(i).append(";\n")
+                    .append("var l").append(i).append(" = [v").append(i).append(", s").append(i).append(", ").append(i).append("];\n")
+                    .append("var d").append(i).append(" = {\"key\": l").append(i).append(", \"n\": v").append(i).append("};\n")
+                    .append("while (v").append(i).append(" > 100 or v").append(i).append(" < -100) v").append(i).append(" = v").append(i).append(" / 2;\n");
+        }
+        return source.toString();
+    }
+}
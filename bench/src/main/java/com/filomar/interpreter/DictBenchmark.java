@@ -0,0 +1,70 @@
+package com.filomar.interpreter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+//FlexDict against the HashMap-backed baseline, on small string-keyed records and on larger tables
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DictBenchmark {
+    @Param({"4", "8", "64", "1024"})
+    int entries;
+
+    private String[] keys;
+    private FlexDict dict;
+    private Map<Object, Object> map;
+
+    @Setup
+    public void setup() {
+        keys = new String[entries];
+        dict = new FlexDict();
+        map = new HashMap<>();
+        for (int i = 0; i < entries; i++) {
+            keys[i] = ("field" + i).intern(); //what the scanner produces for identifier and string literal keys
+            dict.put(keys[i], (long) i);
+            map.put(keys[i], (long) i);
+        }
+    }
+
+    @Benchmark
+    public void flexDictGet(Blackhole blackhole) {
+        for (String key : keys) blackhole.consume(dict.get(key, null));
+    }
+
+    @Benchmark
+    public void hashMapGet(Blackhole blackhole) {
+        for (String key : keys) blackhole.consume(map.get(key));
+    }
+
+    @Benchmark
+    public FlexDict flexDictBuild() {
+        FlexDict record = new FlexDict();
+        for (int i = 0; i < keys.length; i++) record.put(keys[i], (long) i);
+        return record;
+    }
+
+    @Benchmark
+    public Map<Object, Object> hashMapBuild() {
+        Map<Object, Object> record = new HashMap<>();
+        for (int i = 0; i < keys.length; i++) record.put(keys[i], (long) i);
+        return record;
+    }
+}
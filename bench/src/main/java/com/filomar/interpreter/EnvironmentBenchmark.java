@@ -0,0 +1,61 @@
+package com.filomar.interpreter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+//Reading and assigning a global from a scope nested depth levels below it, every level holds a few unrelated locals
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EnvironmentBenchmark {
+    @Param({"1", "4", "16", "64"})
+    int depth;
+
+    private Environment innermost;
+    private Token global;
+    private Token local;
+    private long counter = 0;
+
+    @Setup
+    public void setup() {
+        Environment globals = new Environment();
+        globals.createBinding("total", 0L);
+        innermost = globals;
+        for (int level = 1; level < depth; level++) {
+            innermost = new Environment(innermost);
+            innermost.createBinding("i", (long) level);
+            innermost.createBinding("item" + level, null);
+        }
+        global = new Token(TokenType.IDENTIFIER, "total", null, 1, 1);
+        local = new Token(TokenType.IDENTIFIER, "i", null, 1, 1);
+    }
+
+    @Benchmark
+    public Object lookupGlobal() {
+        return innermost.getBinding(global);
+    }
+
+    @Benchmark
+    public Object lookupLocal() {
+        return depth == 1 ? innermost.getBinding(global) : innermost.getBinding(local);
+    }
+
+    @Benchmark
+    public void assignGlobal() {
+        innermost.setBinding(global, counter++);
+    }
+}
@@ -0,0 +1,50 @@
+package com.filomar.interpreter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+//Scanner.scanTokens and Parser.parse on their own, the parser always gets the same pre-scanned token list
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FrontendBenchmark {
+    @Param({"env_persistance", "recursion", BenchmarkSources.SYNTHETIC})
+    String source;
+
+    @Param({"500"}) //synthetic units, about 10k lines
+    int size;
+
+    private String text;
+    private List<Token> tokens;
+
+    @Setup
+    public void setup() {
+        text = BenchmarkSources.load(source, size);
+        tokens = BenchmarkSources.scan(text);
+    }
+
+    @Benchmark
+    public List<Token> scanTokens() {
+        return new Scanner(text, BenchmarkSources.FAIL).scanTokens();
+    }
+
+    @Benchmark
+    public List<Stmt> parse() {
+        return new Parser(tokens, BenchmarkSources.FAIL).parse();
+    }
+}
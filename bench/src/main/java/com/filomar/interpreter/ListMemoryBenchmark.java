@@ -0,0 +1,80 @@
+package com.filomar.interpreter;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+//Retained heap of a million-element numeric list, FlexList storage strategies against a boxed ArrayList<Object>
+//Every case runs in a fresh JVM so garbage left over by the previous one cannot skew the readings
+public class ListMemoryBenchmark {
+    private static final int SIZE = 1_000_000;
+    private static final Map<String, Supplier<Object>> CASES = new LinkedHashMap<>();
+    private static Object retained;
+
+    static {
+        CASES.put("ArrayList<Object> of integers", () -> {
+            List<Object> list = new ArrayList<>();
+            for (long i = 0; i < SIZE; i++) list.add(i * 1_000);
+            return list;
+        });
+        CASES.put("ArrayList<Object> of doubles", () -> {
+            List<Object> list = new ArrayList<>();
+            for (int i = 0; i < SIZE; i++) list.add(i * 0.5);
+            return list;
+        });
+        CASES.put("FlexList of integers", () -> {
+            FlexList list = new FlexList();
+            for (long i = 0; i < SIZE; i++) list.add(i * 1_000);
+            return list;
+        });
+        CASES.put("FlexList of doubles", () -> {
+            FlexList list = new FlexList();
+            for (int i = 0; i < SIZE; i++) list.add(i * 0.5);
+            return list;
+        });
+        CASES.put("FlexList of mixed numbers", () -> {
+            FlexList list = new FlexList();
+            for (long i = 0; i < SIZE; i++) list.add(i % 2 == 0 ? (Object) i : (Object) (i * 0.5));
+            return list;
+        });
+        CASES.put("FlexList of mixed values", () -> {
+            FlexList list = new FlexList();
+            for (int i = 0; i < SIZE; i++) list.add(i % 2 == 0 ? (Object) (i * 0.5) : "odd");
+            return list;
+        });
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length == 1) {
+            measure(args[0]);
+            return;
+        }
+
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        for (String name : CASES.keySet()) {
+            Process process = new ProcessBuilder(java, "-XX:+UseSerialGC", "-Xms1g", "-Xmx1g",
+                    "-cp", System.getProperty("java.class.path"), ListMemoryBenchmark.class.getName(), name)
+                    .inheritIO()
+                    .start();
+            process.waitFor();
+        }
+    }
+
+    private static void measure(String name) {
+        long before = usedHeap();
+        retained = CASES.get(name).get();
+        long after = usedHeap();
+        String strategy = retained instanceof FlexList list ? " (" + list.strategy() + ")" : "";
+        System.out.printf("%-30s %8.2f MiB%s%n", name, (after - before) / (1024.0 * 1024.0), strategy);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
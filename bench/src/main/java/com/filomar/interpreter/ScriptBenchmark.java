@@ -0,0 +1,59 @@
+package com.filomar.interpreter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+//Whole programs in a fresh context, from source and from an already compiled program, output is discarded
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScriptBenchmark {
+    @Param({"recursion", "env_persistance", BenchmarkSources.SYNTHETIC})
+    String script;
+
+    @Param({"20"}) //recursion.flx prints fib(0) up to fib(49), which would take hours, only the first ones are run
+    int fibonacciLimit;
+
+    @Param({"500"}) //synthetic units, about 10k lines
+    int size;
+
+    private String source;
+    private FlexProgram program;
+
+    @Setup
+    public void setup() {
+        source = BenchmarkSources.load(script, size);
+        if (script.equals("recursion")) source = source.replace("i < 50", "i < " + fibonacciLimit);
+        program = FlexProgram.compile(source);
+        if (run() != FlexContext.EXIT_OK) throw new IllegalStateException(script + " does not run cleanly");
+    }
+
+    @Benchmark
+    public int run() {
+        return context().run(source);
+    }
+
+    @Benchmark
+    public int execute() {
+        return context().execute(program);
+    }
+
+    private static FlexContext context() {
+        return new FlexContext(OutputStream.nullOutputStream(), OutputStream.nullOutputStream());
+    }
+}
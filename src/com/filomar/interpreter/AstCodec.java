@@ -0,0 +1,209 @@
+package com.filomar.interpreter;
+
+import java.io.IOException;
+
+final class AstCodec {
+	private AstCodec() {}
+
+	static void writeExpr(ImageWriter out, Expr expr) throws IOException {
+		switch (expr) {
+			case Expr.Assign node -> {
+				out.writeTag(2);
+				out.writeToken(node.identifier);
+				out.writeExpr(node.expression);
+				out.writeGlobalCache(node.cache);
+			}
+			case Expr.Logical node -> {
+				out.writeTag(3);
+				out.writeExpr(node.left);
+				out.writeToken(node.operator);
+				out.writeExpr(node.right);
+			}
+			case Expr.Binary node -> {
+				out.writeTag(4);
+				out.writeExpr(node.left);
+				out.writeToken(node.operator);
+				out.writeExpr(node.right);
+			}
+			case Expr.Unary node -> {
+				out.writeTag(5);
+				out.writeToken(node.operator);
+				out.writeExpr(node.expression);
+			}
+			case Expr.Call node -> {
+				out.writeTag(6);
+				out.writeExpr(node.callee);
+				out.writeToken(node.paren);
+				out.writeExprs(node.arguments);
+			}
+			case Expr.ListLiteral node -> {
+				out.writeTag(7);
+				out.writeToken(node.bracket);
+				out.writeExprs(node.elements);
+			}
+			case Expr.Index node -> {
+				out.writeTag(8);
+				out.writeExpr(node.object);
+				out.writeToken(node.bracket);
+				out.writeExpr(node.index);
+			}
+			case Expr.IndexAssign node -> {
+				out.writeTag(9);
+				out.writeExpr(node.object);
+				out.writeToken(node.bracket);
+				out.writeExpr(node.index);
+				out.writeExpr(node.value);
+			}
+			case Expr.DictLiteral node -> {
+				out.writeTag(10);
+				out.writeToken(node.brace);
+				out.writeExprs(node.keys);
+				out.writeExprs(node.values);
+			}
+			case Expr.Get node -> {
+				out.writeTag(11);
+				out.writeExpr(node.object);
+				out.writeToken(node.identifier);
+			}
+			case Expr.Set node -> {
+				out.writeTag(12);
+				out.writeExpr(node.object);
+				out.writeToken(node.identifier);
+				out.writeExpr(node.value);
+			}
+			case Expr.This node -> {
+				out.writeTag(13);
+				out.writeToken(node.keyword);
+			}
+			case Expr.Super node -> {
+				out.writeTag(14);
+				out.writeToken(node.keyword);
+				out.writeToken(node.method);
+			}
+			case Expr.Literal node -> {
+				out.writeTag(15);
+				out.writeLiteral(node.value);
+			}
+			case Expr.Variable node -> {
+				out.writeTag(16);
+				out.writeToken(node.identifier);
+				out.writeGlobalCache(node.cache);
+			}
+			case Expr.Grouping node -> {
+				out.writeTag(17);
+				out.writeExpr(node.expression);
+			}
+			default -> throw new IllegalStateException("Unknown expr node " + expr);
+		}
+	}
+
+	static void writeStmt(ImageWriter out, Stmt stmt) throws IOException {
+		switch (stmt) {
+			case Stmt.ClassDcl node -> {
+				out.writeTag(2);
+				out.writeToken(node.identifier);
+				out.writeExpr(node.superclass);
+				out.writeStmts(node.methods);
+			}
+			case Stmt.FunDcl node -> {
+				out.writeTag(3);
+				out.writeToken(node.identifier);
+				out.writeTokens(node.parameters);
+				out.writeStmts(node.body);
+				out.writeBoolean(node.isGenerator);
+				out.writeBoolean(node.scopeEscapes);
+			}
+			case Stmt.VarDcl node -> {
+				out.writeTag(4);
+				out.writeToken(node.identifier);
+				out.writeExpr(node.initializer);
+			}
+			case Stmt.Block node -> {
+				out.writeTag(5);
+				out.writeStmts(node.statements);
+				out.writeBoolean(node.scopeEscapes);
+			}
+			case Stmt.Break node -> {
+				out.writeTag(6);
+			}
+			case Stmt.ForIn node -> {
+				out.writeTag(7);
+				out.writeToken(node.identifier);
+				out.writeExpr(node.iterable);
+				out.writeStmt(node.body);
+				out.writeBoolean(node.scopeEscapes);
+			}
+			case Stmt.If node -> {
+				out.writeTag(8);
+				out.writeExpr(node.condition);
+				out.writeStmt(node.thenBranch);
+				out.writeStmt(node.elseBranch);
+			}
+			case Stmt.Print node -> {
+				out.writeTag(9);
+				out.writeExpr(node.value);
+			}
+			case Stmt.Return node -> {
+				out.writeTag(10);
+				out.writeExpr(node.value);
+			}
+			case Stmt.While node -> {
+				out.writeTag(11);
+				out.writeToken(node.keyword);
+				out.writeExpr(node.condition);
+				out.writeStmt(node.body);
+			}
+			case Stmt.Yield node -> {
+				out.writeTag(12);
+				out.writeToken(node.keyword);
+				out.writeExpr(node.value);
+			}
+			case Stmt.Expression node -> {
+				out.writeTag(13);
+				out.writeExpr(node.expression);
+			}
+			default -> throw new IllegalStateException("Unknown stmt node " + stmt);
+		}
+	}
+
+	static Expr readExpr(ImageReader in, int tag) throws IOException {
+		return switch (tag) {
+			case 2 -> new Expr.Assign(in.readToken(), in.readExpr(), in.readGlobalCache());
+			case 3 -> new Expr.Logical(in.readExpr(), in.readToken(), in.readExpr());
+			case 4 -> new Expr.Binary(in.readExpr(), in.readToken(), in.readExpr());
+			case 5 -> new Expr.Unary(in.readToken(), in.readExpr());
+			case 6 -> new Expr.Call(in.readExpr(), in.readToken(), in.readExprs());
+			case 7 -> new Expr.ListLiteral(in.readToken(), in.readExprs());
+			case 8 -> new Expr.Index(in.readExpr(), in.readToken(), in.readExpr());
+			case 9 -> new Expr.IndexAssign(in.readExpr(), in.readToken(), in.readExpr(), in.readExpr());
+			case 10 -> new Expr.DictLiteral(in.readToken(), in.readExprs(), in.readExprs());
+			case 11 -> new Expr.Get(in.readExpr(), in.readToken(), new PropertyCache());
+			case 12 -> new Expr.Set(in.readExpr(), in.readToken(), in.readExpr(), new PropertyCache());
+			case 13 -> new Expr.This(in.readToken());
+			case 14 -> new Expr.Super(in.readToken(), in.readToken());
+			case 15 -> new Expr.Literal(in.readLiteral());
+			case 16 -> new Expr.Variable(in.readToken(), in.readGlobalCache());
+			case 17 -> new Expr.Grouping(in.readExpr());
+			default -> throw new IOException("Unknown expr tag " + tag);
+		};
+	}
+
+	static Stmt readStmt(ImageReader in, int tag) throws IOException {
+		return switch (tag) {
+			case 2 -> new Stmt.ClassDcl(in.readToken(), (Expr.Variable) in.readExpr(), in.readStmts(Stmt.FunDcl.class));
+			case 3 -> new Stmt.FunDcl(in.readToken(), in.readTokens(), in.readStmts(Stmt.class), in.readBoolean(), in.readBoolean());
+			case 4 -> new Stmt.VarDcl(in.readToken(), in.readExpr());
+			case 5 -> new Stmt.Block(in.readStmts(Stmt.class), in.readBoolean());
+			case 6 -> new Stmt.Break();
+			case 7 -> new Stmt.ForIn(in.readToken(), in.readExpr(), in.readStmt(), in.readBoolean());
+			case 8 -> new Stmt.If(in.readExpr(), in.readStmt(), in.readStmt());
+			case 9 -> new Stmt.Print(in.readExpr());
+			case 10 -> new Stmt.Return(in.readExpr());
+			case 11 -> new Stmt.While(in.readToken(), in.readExpr(), in.readStmt());
+			case 12 -> new Stmt.Yield(in.readToken(), in.readExpr());
+			case 13 -> new Stmt.Expression(in.readExpr());
+			default -> throw new IOException("Unknown stmt tag " + tag);
+		};
+	}
+
+}
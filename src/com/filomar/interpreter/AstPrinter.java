@@ -44,6 +44,56 @@ public class AstPrinter implements Expr.Visitor<String> {
         return builder.toString();
     }
 
+    @Override
+    public String visitListLiteralExpr(Expr.ListLiteral expr) {
+        StringBuilder builder = new StringBuilder("[");
+        for (int i = 0; i < expr.elements.size(); i++) {
+            if (i > 0) builder.append(", ");
+            builder.append(expr.elements.get(i).accept(this));
+        }
+        return builder.append("]").toString();
+    }
+
+    @Override
+    public String visitIndexExpr(Expr.Index expr) {
+        return expr.object.accept(this) + "[" + expr.index.accept(this) + "]";
+    }
+
+    @Override
+    public String visitIndexAssignExpr(Expr.IndexAssign expr) {
+        return expr.object.accept(this) + "[" + expr.index.accept(this) + "] = " + expr.value.accept(this);
+    }
+
+    @Override
+    public String visitDictLiteralExpr(Expr.DictLiteral expr) {
+        StringBuilder builder = new StringBuilder("{");
+        for (int i = 0; i < expr.keys.size(); i++) {
+            if (i > 0) builder.append(", ");
+            builder.append(expr.keys.get(i).accept(this)).append(": ").append(expr.values.get(i).accept(this));
+        }
+        return builder.append("}").toString();
+    }
+
+    @Override
+    public String visitGetExpr(Expr.Get expr) {
+        return expr.object.accept(this) + "." + expr.identifier.lexeme;
+    }
+
+    @Override
+    public String visitSetExpr(Expr.Set expr) {
+        return expr.object.accept(this) + "." + expr.identifier.lexeme + " = " + expr.value.accept(this);
+    }
+
+    @Override
+    public String visitThisExpr(Expr.This expr) {
+        return "this";
+    }
+
+    @Override
+    public String visitSuperExpr(Expr.Super expr) {
+        return "super." + expr.method.lexeme;
+    }
+
     @Override
     public String visitLiteralExpr(Expr.Literal expr) {
         if (expr.value == null) return "null";
@@ -0,0 +1,49 @@
+package com.filomar.interpreter;
+
+//Interpreter recording FlexCounters for every binary operation, variable access and loop iteration it executes
+//Only used in the --count mode, the plain interpreter pays nothing for it
+class CountingInterpreter extends Interpreter {
+    //Fields
+    private final FlexCounters counters;
+
+    //Constructors
+    CountingInterpreter(FlexContext context, FlexCounters counters) {
+        super(context);
+        this.counters = counters;
+    }
+
+    private CountingInterpreter(CountingInterpreter parent) {
+        super(parent);
+        this.counters = parent.counters;
+    }
+
+    //Methods
+    @Override
+    Interpreter worker() {
+        return new CountingInterpreter(this);
+    }
+
+    @Override
+    Object binary(Expr.Binary expression, Object left, Object right) {
+        counters.binary(expression, left, right);
+        return super.binary(expression, left, right);
+    }
+
+    @Override
+    public Object visitVariableExpr(Expr.Variable expression) {
+        counters.access(expression, FlexCounters.Kind.LOOKUP, expression.identifier, environment.hopsTo(expression.identifier.lexeme));
+        return super.visitVariableExpr(expression);
+    }
+
+    @Override
+    public Object visitAssignExpr(Expr.Assign expression) {
+        counters.access(expression, FlexCounters.Kind.ASSIGN, expression.identifier, environment.hopsTo(expression.identifier.lexeme));
+        return super.visitAssignExpr(expression);
+    }
+
+    @Override
+    void onIteration(Stmt loop) {
+        if (loop instanceof Stmt.While whileLoop) counters.iteration(loop, whileLoop.keyword);
+        else if (loop instanceof Stmt.ForIn forIn) counters.iteration(loop, forIn.identifier);
+    }
+}
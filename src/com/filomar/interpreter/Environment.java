@@ -1,30 +1,133 @@
 package com.filomar.interpreter;
 
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class Environment {
     //Fields
-    private final Environment parent;
-    private final Map<String, Object> bindings = new HashMap<>();
+    private static final Object NULL = new Object(); //stands in for null local values, a missing binding then reads as null
+    private Environment parent; //only changes when a pooled scope is reused, see Interpreter.acquireScope()
+    private final Map<String, Object> bindings; //local scopes
+
+    //Globals live in cells instead, so that sites can cache them, see GlobalCache
+    //The version moves on every redefinition, tasks may redefine concurrently so no increment can get lost
+    private final Map<String, GlobalCell> cells;
+    private final AtomicInteger version;
+
+    //Copy-on-write views over another context's globals, null for every other environment
+    //Bindings are copied into the view the first time they are read or assigned, together with everything mutable
+    //they reach, so a view never shares a list, dict, instance or captured scope with the prelude or other views
+    private final Environment prelude;
+    private final Map<Object, Object> copies; //prelude environments and classes -> their counterparts in this view
+    private final Set<String> removed; //prelude names undefined in this view, they are not inherited again
 
     //Constructors
-    Environment() {
-        parent = null;
+    Environment() { //globals are shared by every task of a context
+        this.parent = null;
+        this.bindings = null;
+        this.cells = new ConcurrentHashMap<>();
+        this.version = new AtomicInteger();
+        this.prelude = null;
+        this.copies = null;
+        this.removed = null;
     }
 
     Environment(Environment enclosure) {
         this.parent = enclosure;
+        this.bindings = new HashMap<>();
+        this.cells = null;
+        this.version = null;
+        this.prelude = null;
+        this.copies = null;
+        this.removed = null;
+    }
+
+    private Environment(Environment prelude, Map<Object, Object> copies) {
+        this.parent = null;
+        this.bindings = null;
+        this.cells = new ConcurrentHashMap<>();
+        this.version = new AtomicInteger();
+        this.prelude = prelude;
+        this.copies = copies;
+        this.removed = ConcurrentHashMap.newKeySet();
+        copies.put(prelude, this); //prelude functions re-pointed at this view read and write its globals
+    }
+
+    static Environment viewOf(Environment globals) {
+        return new Environment(globals, new IdentityHashMap<>());
     }
 
     //Methods
+    void reset(Environment enclosure) { //local scopes only
+        this.parent = enclosure;
+        bindings.clear();
+    }
+
+    Environment enclosing() {
+        return parent;
+    }
+
+    boolean isView() {
+        return prelude != null;
+    }
+
     void createBinding(String name, Object value) {
-        bindings.put(name, value);
+        if (cells == null) {
+            bindings.put(name, value == null ? NULL : value);
+            return;
+        }
+        if (removed != null) removed.remove(name);
+        if (cells.put(name, new GlobalCell(value)) != null) version.incrementAndGet(); //after the put, see GlobalCache
+    }
+
+    void removeBinding(String name) { //globals only
+        if (removed != null && prelude.cells.containsKey(name)) removed.add(name);
+        cells.remove(name);
+        version.incrementAndGet();
+    }
+
+    boolean hasLocalBinding(String name) { //views answer from the prelude without copying
+        if (cells == null) return bindings.containsKey(name);
+        return cells.containsKey(name) || inherits(name);
+    }
+
+    //Values handed out of a view are its own copies, the same the script gets on its first read
+    Object getLocalBinding(String name) {
+        if (cells != null) {
+            GlobalCell cell = cell(name);
+            return cell == null ? null : cell.value;
+        }
+        Object value = bindings.get(name);
+        return value == NULL ? null : value;
+    }
+
+    Map<String, Object> localBindings() {
+        Map<String, Object> copy = new HashMap<>();
+        if (cells != null) {
+            if (prelude != null) for (String name : prelude.cells.keySet()) cell(name);
+            for (Map.Entry<String, GlobalCell> binding : cells.entrySet()) copy.put(binding.getKey(), binding.getValue().value);
+            return copy;
+        }
+        for (Map.Entry<String, Object> binding : bindings.entrySet()) {
+            copy.put(binding.getKey(), binding.getValue() == NULL ? null : binding.getValue());
+        }
+        return copy;
     }
 
     Object getBinding(Token identifier) {
-        if (bindings.containsKey(identifier.lexeme))
-            return bindings.get(identifier.lexeme);
+        if (cells != null) {
+            GlobalCell cell = cell(identifier.lexeme);
+            if (cell != null) return cell.value;
+            throw new RuntimeError(identifier, "Undefined binding '" + identifier.lexeme + "'.");
+        }
+
+        Object value = bindings.get(identifier.lexeme);
+        if (value != null)
+            return value == NULL ? null : value;
 
         if (parent != null)
             return parent.getBinding(identifier);
@@ -32,9 +135,28 @@ public class Environment {
         throw new RuntimeError(identifier, "Undefined binding '" + identifier.lexeme + "'.");
     }
 
+    int hopsTo(String name) { //scopes walked up before reaching the one defining name, -1 if there is none
+        int hops = 0;
+        for (Environment scope = this; scope != null; scope = scope.parent, hops++) {
+            if (scope.cells != null ? scope.cells.containsKey(name) : scope.bindings.containsKey(name)) return hops;
+            if (scope.inherits(name)) return hops;
+        }
+        return -1;
+    }
+
     void setBinding(Token identifier, Object value) {
+        if (cells != null) {
+            GlobalCell cell = cells.get(identifier.lexeme);
+            if (cell == null && inherits(identifier.lexeme)) { //copy on write
+                cell = cells.computeIfAbsent(identifier.lexeme, name -> new GlobalCell(null));
+            }
+            if (cell == null) throw new RuntimeError(identifier, "Undefined binding " + identifier.lexeme + "'.");
+            cell.value = value;
+            return;
+        }
+
         if (bindings.containsKey(identifier.lexeme)) {
-            bindings.put(identifier.lexeme, value);
+            bindings.put(identifier.lexeme, value == null ? NULL : value);
             return;
         }
 
@@ -45,4 +167,81 @@ public class Environment {
 
         throw new RuntimeError(identifier, "Undefined binding " + identifier.lexeme + "'.");
     }
+
+    //--Globals
+    GlobalCell cell(String name) { //globals only, null when name is not defined
+        GlobalCell cell = cells.get(name);
+        if (cell == null && inherits(name)) cell = cells.computeIfAbsent(name, this::inherit);
+        return cell;
+    }
+
+    private boolean inherits(String name) { //views only, the prelude defines name and this view has not removed it
+        return prelude != null && prelude.cells.containsKey(name) && !removed.contains(name);
+    }
+
+    int version() {
+        return version.get();
+    }
+
+    //--Copies
+    Environment snapshot(Map<Object, Object> copies, boolean deep) { //globals stay shared unless mapped, local scopes are copied
+        if (cells != null) return (Environment) copies.getOrDefault(this, this);
+
+        Environment copy = (Environment) copies.get(this);
+        if (copy != null) return copy;
+
+        copy = new Environment(parent.snapshot(copies, deep));
+        copies.put(this, copy);
+        for (Map.Entry<String, Object> binding : bindings.entrySet()) {
+            copy.bindings.put(binding.getKey(), snapshotValue(binding.getValue(), copies, deep));
+        }
+        return copy;
+    }
+
+    private GlobalCell inherit(String name) {
+        synchronized (copies) { //tasks of the same script may inherit concurrently
+            return new GlobalCell(snapshotValue(prelude.cells.get(name).value, copies, true));
+        }
+    }
+
+    //Tasks share lists, dicts and instances with their parent, views get their own copies of them
+    //Copies are recorded in the same map as scopes and classes, so aliases and cycles come out the same in the copy
+    //Tasks, channels and generators are always shared, they are handles to running code rather than data
+    private static Object snapshotValue(Object value, Map<Object, Object> copies, boolean deep) {
+        if (value instanceof FlexFunction function) return function.snapshot(copies, deep);
+        if (value instanceof FlexClass flexClass) return flexClass.snapshot(copies, deep);
+        if (!deep || !(value instanceof FlexList || value instanceof FlexDict || value instanceof FlexInstance)) return value;
+
+        Object copy = copies.get(value);
+        if (copy != null) return copy;
+        switch (value) {
+            case FlexList list -> {
+                FlexList copiedList = new FlexList();
+                copies.put(list, copiedList);
+                for (int i = 0; i < list.size(); i++) copiedList.add(snapshotValue(list.get(i), copies, true));
+                return copiedList;
+            }
+            case FlexDict dict -> {
+                FlexDict copiedDict = new FlexDict();
+                copies.put(dict, copiedDict);
+                FlexList keys = dict.keys();
+                FlexList values = dict.values();
+                for (int i = 0; i < keys.size(); i++) {
+                    copiedDict.put(snapshotValue(keys.get(i), copies, true), snapshotValue(values.get(i), copies, true));
+                }
+                return copiedDict;
+            }
+            default -> { //fields replayed in slot order, like ImageReader does
+                FlexInstance instance = (FlexInstance) value;
+                FlexInstance copiedInstance = new FlexInstance(instance.shape.owner.snapshot(copies, true));
+                copies.put(instance, copiedInstance);
+                for (int i = 0; i < instance.shape.slotCount(); i++) {
+                    Shape next = copiedInstance.shape.withField(instance.shape.fieldAt(i));
+                    copiedInstance.grow(next);
+                    copiedInstance.slots[next.slotCount() - 1] = snapshotValue(instance.slots[i], copies, true);
+                }
+                return copiedInstance;
+            }
+        }
+    }
 }
@@ -0,0 +1,5 @@
+package com.filomar.interpreter;
+
+interface ErrorReporter {
+    void onErrorDetected(int line, int column, String message);
+}
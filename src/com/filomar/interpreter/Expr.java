@@ -9,6 +9,14 @@ abstract class Expr {
 		R visitBinaryExpr(Binary expr);
 		R visitUnaryExpr(Unary expr);
 		R visitCallExpr(Call expr);
+		R visitListLiteralExpr(ListLiteral expr);
+		R visitIndexExpr(Index expr);
+		R visitIndexAssignExpr(IndexAssign expr);
+		R visitDictLiteralExpr(DictLiteral expr);
+		R visitGetExpr(Get expr);
+		R visitSetExpr(Set expr);
+		R visitThisExpr(This expr);
+		R visitSuperExpr(Super expr);
 		R visitLiteralExpr(Literal expr);
 		R visitVariableExpr(Variable expr);
 		R visitGroupingExpr(Grouping expr);
@@ -19,10 +27,12 @@ abstract class Expr {
 	static class Assign extends Expr {
 		final Token identifier;
 		final Expr expression;
+		final GlobalCache cache;
 
-		Assign(Token identifier, Expr expression) {
+		Assign(Token identifier, Expr expression, GlobalCache cache) {
 			this.identifier = identifier;
 			this.expression = expression;
+			this.cache = cache;
 		}
 
 		@Override
@@ -97,6 +107,138 @@ abstract class Expr {
 		}
 	}
 
+	static class ListLiteral extends Expr {
+		final Token bracket;
+		final List<Expr> elements;
+
+		ListLiteral(Token bracket, List<Expr> elements) {
+			this.bracket = bracket;
+			this.elements = elements;
+		}
+
+		@Override
+		<R> R accept(Visitor<R> visitor) {
+			return visitor.visitListLiteralExpr(this);
+		}
+	}
+
+	static class Index extends Expr {
+		final Expr object;
+		final Token bracket;
+		final Expr index;
+
+		Index(Expr object, Token bracket, Expr index) {
+			this.object = object;
+			this.bracket = bracket;
+			this.index = index;
+		}
+
+		@Override
+		<R> R accept(Visitor<R> visitor) {
+			return visitor.visitIndexExpr(this);
+		}
+	}
+
+	static class IndexAssign extends Expr {
+		final Expr object;
+		final Token bracket;
+		final Expr index;
+		final Expr value;
+
+		IndexAssign(Expr object, Token bracket, Expr index, Expr value) {
+			this.object = object;
+			this.bracket = bracket;
+			this.index = index;
+			this.value = value;
+		}
+
+		@Override
+		<R> R accept(Visitor<R> visitor) {
+			return visitor.visitIndexAssignExpr(this);
+		}
+	}
+
+	static class DictLiteral extends Expr {
+		final Token brace;
+		final List<Expr> keys;
+		final List<Expr> values;
+
+		DictLiteral(Token brace, List<Expr> keys, List<Expr> values) {
+			this.brace = brace;
+			this.keys = keys;
+			this.values = values;
+		}
+
+		@Override
+		<R> R accept(Visitor<R> visitor) {
+			return visitor.visitDictLiteralExpr(this);
+		}
+	}
+
+	static class Get extends Expr {
+		final Expr object;
+		final Token identifier;
+		final PropertyCache cache;
+
+		Get(Expr object, Token identifier, PropertyCache cache) {
+			this.object = object;
+			this.identifier = identifier;
+			this.cache = cache;
+		}
+
+		@Override
+		<R> R accept(Visitor<R> visitor) {
+			return visitor.visitGetExpr(this);
+		}
+	}
+
+	static class Set extends Expr {
+		final Expr object;
+		final Token identifier;
+		final Expr value;
+		final PropertyCache cache;
+
+		Set(Expr object, Token identifier, Expr value, PropertyCache cache) {
+			this.object = object;
+			this.identifier = identifier;
+			this.value = value;
+			this.cache = cache;
+		}
+
+		@Override
+		<R> R accept(Visitor<R> visitor) {
+			return visitor.visitSetExpr(this);
+		}
+	}
+
+	static class This extends Expr {
+		final Token keyword;
+
+		This(Token keyword) {
+			this.keyword = keyword;
+		}
+
+		@Override
+		<R> R accept(Visitor<R> visitor) {
+			return visitor.visitThisExpr(this);
+		}
+	}
+
+	static class Super extends Expr {
+		final Token keyword;
+		final Token method;
+
+		Super(Token keyword, Token method) {
+			this.keyword = keyword;
+			this.method = method;
+		}
+
+		@Override
+		<R> R accept(Visitor<R> visitor) {
+			return visitor.visitSuperExpr(this);
+		}
+	}
+
 	static class Literal extends Expr {
 		final Object value;
 
@@ -112,9 +254,11 @@ abstract class Expr {
 
 	static class Variable extends Expr {
 		final Token identifier;
+		final GlobalCache cache;
 
-		Variable(Token identifier) {
+		Variable(Token identifier, GlobalCache cache) {
 			this.identifier = identifier;
+			this.cache = cache;
 		}
 
 		@Override
@@ -1,28 +1,51 @@
 package com.filomar.interpreter;
 
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Paths;
-import java.util.List;
+import java.util.Arrays;
+import javax.management.JMException;
 
 public class Flex {
     //Fields
-    private static final Interpreter interpreter = new Interpreter();
-    static boolean hadError = false;
-    static boolean hadRuntimeError = false;
+    private static final FlexContext context = new FlexContext();
+    private static final int HOT_PATH_REPORT_SIZE = 30;
 
     //Methods
     //--Main
     public static void main(String[] args) throws IOException {
-        if (args.length == 0)
+        if (Boolean.getBoolean("flex.jmx")) publishMetrics(); //-Dflex.jmx=true, for watching long scripts from JConsole
+
+        if (args.length > 0 && args[0].equals("--batch"))
+            System.exit(FlexBatch.run(Arrays.copyOfRange(args, 1, args.length)));
+        else if (args.length > 0 && args[0].equals("--profile"))
+            System.exit(FlexProfiler.run(Arrays.copyOfRange(args, 1, args.length)));
+        else if (args.length == 2 && args[0].equals("--count"))
+            runFileCounting(args[1]);
+        else if (args.length == 2 && args[0].equals("--trace"))
+            runFileTracing(args[1]);
+        else if (args.length > 0 && args[0].equals("--bench"))
+            System.exit(FlexBench.run(Arrays.copyOfRange(args, 1, args.length)));
+        else if (args.length == 3 && args[0].equals("--snapshot"))
+            writeImage(args[1], args[2]);
+        else if (args.length == 3 && args[0].equals("--image"))
+            runFromImage(args[1], args[2]);
+        else if (args.length == 2 && args[0].equals("--stream"))
+            runFileStreaming(args[1]);
+        else if (args.length == 0)
             runPrompt();
         else if (args.length == 1)
             runFile(args[0]);
         else {
-            System.out.println("Usage: jflex <script>");
+            System.out.println("Usage: jflex <script> | jflex --batch [options] <scripts...> | jflex --bench [options] <script>");
+            System.out.println("       jflex --snapshot <image> <prelude> | jflex --image <image> <script> | jflex --stream <script>");
+            System.out.println("       jflex --profile [options] <script> | jflex --count <script> | jflex --trace <script>");
             System.exit(64);
         }
     }
@@ -30,54 +53,94 @@ public class Flex {
     //--Run target program
     private static void runFile(String path) throws IOException {
         byte[] bytes = Files.readAllBytes(Paths.get(path));
-        run(new String(bytes, Charset.defaultCharset()));
+        int status = context.run(new String(bytes, Charset.defaultCharset()));
 
-        if (hadError) System.exit(65);
-        if (hadRuntimeError) System.exit(70);
+        if (status != FlexContext.EXIT_OK) System.exit(status);
     }
 
-    private static void runPrompt() throws IOException {
-        InputStreamReader input = new InputStreamReader(System.in);
-        BufferedReader reader = new BufferedReader(input);
+    private static void runFileStreaming(String path) throws IOException {
+        byte[] bytes = Files.readAllBytes(Paths.get(path));
+        int status = context.runStreaming(new String(bytes, Charset.defaultCharset()));
 
-        for (;;) {
-            System.out.print("> ");
-            String line = reader.readLine();
-            if (line == null) break;
-            run(line);
-            hadError = false;
-        }
+        if (status != FlexContext.EXIT_OK) System.exit(status);
+    }
+
+    private static void runFileCounting(String path) throws IOException { //hot path report on stderr once the script ends
+        byte[] bytes = Files.readAllBytes(Paths.get(path));
+        FlexCounters counters = new FlexCounters();
+        int status = FlexContext.counting(System.out, System.err, counters).run(new String(bytes, Charset.defaultCharset()));
+        counters.report(System.err, HOT_PATH_REPORT_SIZE);
+
+        if (status != FlexContext.EXIT_OK) System.exit(status);
     }
 
-    private static void run(String source) {
-        Scanner scanner = new Scanner(source);
-        List<Token> tokens = scanner.scanTokens();
-        Parser parser = new Parser(tokens);
-        List<Stmt> statements = parser.parse();
+    private static void runFileTracing(String path) throws IOException { //every statement and call on stderr as it runs
+        byte[] bytes = Files.readAllBytes(Paths.get(path));
+        FlexProgram program = FlexProgram.compile(new String(bytes, Charset.defaultCharset()));
+        if (!program.hasErrors()) FlexInstruments.attach(program, probe -> true, new FlexListener() { //otherwise execute() reports them
+            @Override
+            public void onEnter(FlexProbe probe) {
+                context.flush(); //keep the trace in step with the script output
+                System.err.println("[line " + probe.line() + "] " + (probe.isCall() ? "call " + probe.function() : probe.kind()));
+            }
+
+            @Override
+            public void onExit(FlexProbe probe, Object value) {
+                if (!probe.isCall()) return;
+                context.flush();
+                System.err.println("[line " + probe.line() + "] return " + probe.function() + " " + FlexOutput.stringify(value));
+            }
+        });
+        int status = context.execute(program);
 
-        if (hadError) return;
+        if (status != FlexContext.EXIT_OK) System.exit(status);
+    }
+
+    private static void writeImage(String imagePath, String preludePath) throws IOException {
+        byte[] bytes = Files.readAllBytes(Paths.get(preludePath));
+        int status = context.run(new String(bytes, Charset.defaultCharset()));
+        if (status != FlexContext.EXIT_OK) System.exit(status);
 
-        interpreter.interpret(statements);
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(Paths.get(imagePath)))) {
+            context.saveImage(out);
+        }
     }
 
-    //--Error handling
-    static void onErrorDetected(int line, int column, String message) {
-        notifyError(line, column, message);
-        hadError = true;
+    private static void runFromImage(String imagePath, String path) throws IOException {
+        FlexContext restored;
+        try (InputStream in = Files.newInputStream(Paths.get(imagePath))) {
+            restored = FlexContext.restoreImage(in, System.out, System.err);
+        }
+
+        byte[] bytes = Files.readAllBytes(Paths.get(path));
+        int status = restored.run(new String(bytes, Charset.defaultCharset()));
+        if (status != FlexContext.EXIT_OK) System.exit(status);
     }
 
-    static void onRuntimeError(RuntimeError error) {
-        notifyError(error.token.line, error.token.column, error.getMessage());
-        hadRuntimeError = true;
+    private static void publishMetrics() {
+        try {
+            context.metrics().register("main");
+        } catch (JMException e) {
+            System.err.println("Cannot publish metrics: " + e.getMessage());
+        }
     }
 
-    private static void notifyError(int line, int column, String message) {
-        System.err.println("[" + line + ":" + column + "] ERROR: " + message);
+    private static void runPrompt() throws IOException {
+        InputStreamReader input = new InputStreamReader(System.in);
+        BufferedReader reader = new BufferedReader(input);
+
+        for (;;) {
+            context.flush();
+            System.out.print("> ");
+            String line = reader.readLine();
+            if (line == null) break;
+            context.run(line);
+        }
     }
 
     //Debug utility
-    static AstPrinter astPrinter = new AstPrinter(interpreter);
+    static AstPrinter astPrinter = new AstPrinter(context.interpreter);
     public static AstPrinter debugAstPrinter() {
         return astPrinter;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,166 @@
+package com.filomar.interpreter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+//Runs many scripts in parallel, each in its own context forked from a shared prelude
+//Script output is captured and replayed in command line order, followed by a per-script status and timing report
+final class FlexBatch {
+    //Fields
+    private static final String USAGE = "Usage: jflex --batch [--prelude <script>] [--manifest <file>] [--jobs <n>] [scripts...]";
+    private static final int EXIT_USAGE = 64;
+    private static final int EXIT_NO_INPUT = 66;
+
+    private final List<Path> scripts = new ArrayList<>();
+    private Path prelude = null;
+    private int jobs = Runtime.getRuntime().availableProcessors();
+
+    //Constructors
+    private FlexBatch() {}
+
+    //Methods
+    //--Main
+    static int run(String[] args) throws IOException {
+        FlexBatch batch = new FlexBatch();
+        if (!batch.parseArguments(args)) {
+            System.out.println(USAGE);
+            return EXIT_USAGE;
+        }
+        return batch.execute();
+    }
+
+    private boolean parseArguments(String[] args) throws IOException {
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--prelude" -> {
+                    if (++i == args.length) return false;
+                    prelude = Path.of(args[i]);
+                }
+                case "--manifest" -> {
+                    if (++i == args.length) return false;
+                    readManifest(Path.of(args[i]));
+                }
+                case "--jobs" -> {
+                    if (++i == args.length) return false;
+                    try {
+                        jobs = Integer.parseInt(args[i]);
+                    } catch (NumberFormatException e) {
+                        return false;
+                    }
+                    if (jobs < 1) return false;
+                }
+                default -> {
+                    if (args[i].startsWith("--")) return false;
+                    scripts.add(Path.of(args[i]));
+                }
+            }
+        }
+        return !scripts.isEmpty();
+    }
+
+    private void readManifest(Path manifest) throws IOException { //one script per line, relative to the manifest, # starts a comment
+        Path base = manifest.toAbsolutePath().getParent();
+        for (String line : Files.readAllLines(manifest, Charset.defaultCharset())) {
+            line = line.strip();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            scripts.add(base.resolve(line));
+        }
+    }
+
+    //--Execution
+    private int execute() throws IOException {
+        FlexContext root = new FlexContext();
+        if (prelude != null) { //parsed and executed once, every script then forks from its globals
+            int status = root.run(Files.readString(prelude, Charset.defaultCharset()));
+            root.flush();
+            if (status != FlexContext.EXIT_OK) return status;
+        }
+
+        long start = System.nanoTime();
+        List<Future<Result>> pending = new ArrayList<>();
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(jobs, scripts.size()));
+        try {
+            for (Path script : scripts) pending.add(pool.submit(() -> runScript(root, script)));
+
+            List<Result> results = new ArrayList<>();
+            for (Future<Result> future : pending) {
+                Result result = join(future);
+                System.out.println("==> " + result.script + " <==");
+                System.out.write(result.transcript);
+                System.out.flush();
+                results.add(result);
+            }
+            return report(results, System.nanoTime() - start);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static Result runScript(FlexContext root, Path script) {
+        ByteArrayOutputStream transcript = new ByteArrayOutputStream();
+        PrintStream sink = new PrintStream(transcript, true, Charset.defaultCharset()); //stdout and stderr stay interleaved
+        long start = System.nanoTime();
+
+        int status;
+        try {
+            String source = Files.readString(script, Charset.defaultCharset());
+            FlexContext context = root.fork(sink, sink);
+            status = context.run(source);
+            context.flush();
+        } catch (IOException e) {
+            sink.println("Cannot read script " + script);
+            status = EXIT_NO_INPUT;
+        }
+
+        return new Result(script, status, System.nanoTime() - start, transcript.toByteArray());
+    }
+
+    private static Result join(Future<Result> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Batch interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Script crashed the batch runner", e.getCause());
+        }
+    }
+
+    //--Reporting
+    private static int report(List<Result> results, long elapsed) {
+        int worst = FlexContext.EXIT_OK;
+        int failed = 0;
+
+        System.out.println();
+        System.out.printf("%-8s %6s %12s  %s%n", "STATUS", "EXIT", "TIME", "SCRIPT");
+        for (Result result : results) {
+            System.out.printf("%-8s %6d %9.3f ms  %s%n", describe(result.status), result.status, result.nanos / 1e6, result.script);
+            if (result.status != FlexContext.EXIT_OK) failed++;
+            worst = Math.max(worst, result.status);
+        }
+        System.out.printf("%d scripts, %d failed, %.3f ms wall time%n", results.size(), failed, elapsed / 1e6);
+        return worst;
+    }
+
+    private static String describe(int status) {
+        return switch (status) {
+            case FlexContext.EXIT_OK -> "ok";
+            case FlexContext.EXIT_SYNTAX_ERROR -> "syntax";
+            case FlexContext.EXIT_RUNTIME_ERROR -> "runtime";
+            case EXIT_NO_INPUT -> "missing";
+            default -> "failed";
+        };
+    }
+
+    private record Result(Path script, int status, long nanos, byte[] transcript) {}
+}
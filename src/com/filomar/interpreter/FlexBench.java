@@ -0,0 +1,215 @@
+package com.filomar.interpreter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+//Benchmarks Flex code: warmup runs, then timed runs summarized as mean, standard deviation and percentiles
+//Used by the bench() native on a function and by the --bench command on a whole script or one of its functions
+final class FlexBench {
+    //Fields
+    private static final String USAGE = "Usage: jflex --bench [--warmup <n>] [--iterations <n>] [--function <name>] [--alloc] [--json <file>|-] <script>";
+    private static final int EXIT_USAGE = 64;
+    private static final int DEFAULT_WARMUP = 5;
+    private static final int DEFAULT_ITERATIONS = 20;
+
+    private Path script = null;
+    private String function = null;
+    private int warmup = DEFAULT_WARMUP;
+    private int iterations = DEFAULT_ITERATIONS;
+    private boolean allocation = false;
+    private String json = null;
+
+    //Constructors
+    private FlexBench() {}
+
+    //Methods
+    //--Measurement
+    interface Body {
+        void run();
+    }
+
+    //Allocation is read from the whole JVM: generator bodies and tasks run on virtual threads, which have no allocation counter of their own
+    static Result measure(String name, Body body, int warmup, int iterations, boolean allocation) {
+        if (warmup < 0 || iterations < 1) throw new NativeFunction.NativeError("Expected warmup >= 0 and iterations >= 1");
+        for (int i = 0; i < warmup; i++) body.run();
+
+        com.sun.management.ThreadMXBean threads = allocation ? allocationCounter() : null;
+        long[] samples = new long[iterations];
+        long allocatedBefore = threads != null ? threads.getTotalThreadAllocatedBytes() : 0;
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            body.run();
+            samples[i] = System.nanoTime() - start;
+        }
+        long allocated = threads != null ? (threads.getTotalThreadAllocatedBytes() - allocatedBefore) / iterations : -1;
+        return new Result(name, warmup, samples, allocated);
+    }
+
+    private static com.sun.management.ThreadMXBean allocationCounter() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean counter && counter.isThreadAllocatedMemorySupported()) {
+            if (!counter.isThreadAllocatedMemoryEnabled()) counter.setThreadAllocatedMemoryEnabled(true);
+            return counter;
+        }
+        return null; //not a HotSpot JVM, allocation is reported as -1
+    }
+
+    record Result(String name, int warmup, long[] samples, long allocatedBytes) { //samples in nanoseconds, allocatedBytes per iteration
+        Result {
+            samples = samples.clone();
+            Arrays.sort(samples);
+        }
+
+        double mean() {
+            double sum = 0;
+            for (long sample : samples) sum += sample;
+            return sum / samples.length;
+        }
+
+        double stddev() { //sample standard deviation
+            if (samples.length < 2) return 0;
+            double mean = mean();
+            double squares = 0;
+            for (long sample : samples) squares += (sample - mean) * (sample - mean);
+            return Math.sqrt(squares / (samples.length - 1));
+        }
+
+        long percentile(double percent) { //nearest rank
+            int rank = (int) Math.ceil(percent / 100 * samples.length);
+            return samples[Math.max(0, Math.min(samples.length, rank) - 1)];
+        }
+
+        FlexDict toDict() {
+            FlexDict dict = new FlexDict();
+            dict.put("name", name);
+            dict.put("warmup", (long) warmup);
+            dict.put("iterations", (long) samples.length);
+            dict.put("mean", mean());
+            dict.put("stddev", stddev());
+            dict.put("min", samples[0]);
+            dict.put("p50", percentile(50));
+            dict.put("p90", percentile(90));
+            dict.put("p99", percentile(99));
+            dict.put("max", samples[samples.length - 1]);
+            if (allocatedBytes >= 0) dict.put("allocated", allocatedBytes);
+            return dict;
+        }
+
+        String toJson() {
+            StringBuilder json = new StringBuilder("{");
+            json.append("\"name\": \"").append(escape(name)).append("\", ");
+            json.append("\"unit\": \"ns\", ");
+            json.append("\"warmup\": ").append(warmup).append(", ");
+            json.append("\"iterations\": ").append(samples.length).append(", ");
+            json.append("\"mean\": ").append(String.format(Locale.ROOT, "%.1f", mean())).append(", ");
+            json.append("\"stddev\": ").append(String.format(Locale.ROOT, "%.1f", stddev())).append(", ");
+            json.append("\"min\": ").append(samples[0]).append(", ");
+            json.append("\"p50\": ").append(percentile(50)).append(", ");
+            json.append("\"p90\": ").append(percentile(90)).append(", ");
+            json.append("\"p99\": ").append(percentile(99)).append(", ");
+            json.append("\"max\": ").append(samples[samples.length - 1]);
+            if (allocatedBytes >= 0) json.append(", \"allocatedBytes\": ").append(allocatedBytes);
+            return json.append("}").toString();
+        }
+
+        String toTable() {
+            StringBuilder table = new StringBuilder();
+            table.append(String.format(Locale.ROOT, "%s: %d iterations after %d warmup%n", name, samples.length, warmup));
+            table.append(String.format(Locale.ROOT, "  mean %12.3f ms  +- %.3f ms%n", mean() / 1e6, stddev() / 1e6));
+            table.append(String.format(Locale.ROOT, "  min  %12.3f ms%n", samples[0] / 1e6));
+            table.append(String.format(Locale.ROOT, "  p50  %12.3f ms%n", percentile(50) / 1e6));
+            table.append(String.format(Locale.ROOT, "  p90  %12.3f ms%n", percentile(90) / 1e6));
+            table.append(String.format(Locale.ROOT, "  p99  %12.3f ms%n", percentile(99) / 1e6));
+            table.append(String.format(Locale.ROOT, "  max  %12.3f ms%n", samples[samples.length - 1] / 1e6));
+            if (allocatedBytes >= 0) table.append(String.format(Locale.ROOT, "  alloc %11d bytes/op%n", allocatedBytes));
+            return table.toString();
+        }
+
+        private static String escape(String string) {
+            return string.replace("\\", "\\\\").replace("\"", "\\\"");
+        }
+    }
+
+    //--Main
+    static int run(String[] args) throws IOException {
+        FlexBench bench = new FlexBench();
+        if (!bench.parseArguments(args)) {
+            System.out.println(USAGE);
+            return EXIT_USAGE;
+        }
+        return bench.execute();
+    }
+
+    private boolean parseArguments(String[] args) {
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--warmup" -> warmup = Integer.parseInt(args[++i]);
+                    case "--iterations" -> iterations = Integer.parseInt(args[++i]);
+                    case "--function" -> function = args[++i];
+                    case "--json" -> json = args[++i];
+                    case "--alloc" -> allocation = true;
+                    default -> {
+                        if (args[i].startsWith("--") || script != null) return false;
+                        script = Path.of(args[i]);
+                    }
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+            return false;
+        }
+        return script != null && warmup >= 0 && iterations >= 1;
+    }
+
+    private int execute() throws IOException {
+        FlexProgram program = FlexProgram.compile(Files.readString(script, Charset.defaultCharset()));
+        if (program.hasErrors()) {
+            for (String error : program.errors()) System.err.println(error);
+            return FlexContext.EXIT_SYNTAX_ERROR;
+        }
+
+        Body body;
+        String name = script.toString();
+        if (function == null) { //the whole script, every run in a fresh context so globals start over
+            body = () -> {
+                FlexContext context = new FlexContext(OutputStream.nullOutputStream(), System.err);
+                if (context.execute(program) != FlexContext.EXIT_OK) throw new IllegalStateException(context.lastRuntimeError());
+            };
+        } else { //the script runs once as setup, then only the function is timed
+            FlexContext context = new FlexContext(OutputStream.nullOutputStream(), System.err);
+            int status = context.execute(program);
+            if (status != FlexContext.EXIT_OK) return status;
+            if (!(context.lookup(function) instanceof FlexCallable callable) || callable.arity() != 0) {
+                System.err.println("'" + function + "' is not a function without parameters");
+                return EXIT_USAGE;
+            }
+            name += ":" + function;
+            body = () -> {
+                context.invoke(callable, List.of());
+                if (context.lastRuntimeError() != null) throw new IllegalStateException(context.lastRuntimeError());
+            };
+        }
+
+        Result result;
+        try {
+            result = measure(name, body, warmup, iterations, allocation);
+        } catch (IllegalStateException e) {
+            return FlexContext.EXIT_RUNTIME_ERROR; //already reported on stderr
+        }
+
+        if (!"-".equals(json)) System.out.print(result.toTable());
+        if (json != null) {
+            if (json.equals("-")) System.out.println(result.toJson());
+            else Files.writeString(Path.of(json), result.toJson() + System.lineSeparator(), Charset.defaultCharset());
+        }
+        return FlexContext.EXIT_OK;
+    }
+}
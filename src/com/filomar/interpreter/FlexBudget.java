@@ -0,0 +1,34 @@
+package com.filomar.interpreter;
+
+import java.time.Duration;
+
+//Limits on every run of a context, see FlexContext.setBudget(), a null wall time means no deadline
+//They are checked at loop back-edges and calls, straight-line code between two checks can overshoot by a few statements
+//Allocations count the values the interpreter creates: scopes, functions, lists, dicts, instances and concatenated strings
+public record FlexBudget(long maxStatements, int maxCallDepth, long maxAllocations, Duration maxWallTime) {
+    //Fields
+    public static final FlexBudget UNLIMITED = new FlexBudget(Long.MAX_VALUE, Integer.MAX_VALUE, Long.MAX_VALUE, null);
+
+    //Constructors
+    public FlexBudget {
+        if (maxStatements <= 0 || maxCallDepth <= 0 || maxAllocations <= 0) throw new IllegalArgumentException("Limits must be positive");
+        if (maxWallTime != null && (maxWallTime.isNegative() || maxWallTime.isZero())) throw new IllegalArgumentException("Wall time must be positive");
+    }
+
+    //Methods
+    public FlexBudget withStatements(long max) {
+        return new FlexBudget(max, maxCallDepth, maxAllocations, maxWallTime);
+    }
+
+    public FlexBudget withCallDepth(int max) {
+        return new FlexBudget(maxStatements, max, maxAllocations, maxWallTime);
+    }
+
+    public FlexBudget withAllocations(long max) {
+        return new FlexBudget(maxStatements, maxCallDepth, max, maxWallTime);
+    }
+
+    public FlexBudget withWallTime(Duration max) {
+        return new FlexBudget(maxStatements, maxCallDepth, maxAllocations, max);
+    }
+}
@@ -0,0 +1,70 @@
+package com.filomar.interpreter;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+//Bounded FIFO channel, send blocks while full and receive while empty
+//Uses a ReentrantLock rather than monitors so blocked virtual threads release their carrier thread
+public class FlexChannel {
+    //Fields
+    private final Object[] buffer;
+    private int head = 0;
+    private int count = 0;
+    private boolean closed = false;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+
+    //Constructors
+    FlexChannel(int capacity) {
+        this.buffer = new Object[capacity];
+    }
+
+    //Methods
+    void send(Object value) throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (count == buffer.length && !closed) notFull.await();
+            if (closed) throw new NativeFunction.NativeError("Cannot send on a closed channel");
+
+            buffer[(head + count) % buffer.length] = value;
+            count++;
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    Object receive() throws InterruptedException { //null once closed and drained
+        lock.lockInterruptibly();
+        try {
+            while (count == 0 && !closed) notEmpty.await();
+            if (count == 0) return null;
+
+            Object value = buffer[head];
+            buffer[head] = null;
+            head = (head + 1) % buffer.length;
+            count--;
+            notFull.signal();
+            return value;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void close() {
+        lock.lock();
+        try {
+            closed = true;
+            notEmpty.signalAll();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "<channel " + buffer.length + ">";
+    }
+}
@@ -0,0 +1,66 @@
+package com.filomar.interpreter;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class FlexClass implements FlexCallable {
+    //Fields
+    final String name;
+    final FlexClass superclass;
+    private final Map<String, FlexFunction> methods;
+    final Shape rootShape = new Shape(this);
+
+    //Constructors
+    FlexClass(String name, FlexClass superclass, Map<String, FlexFunction> methods) {
+        this.name = name;
+        this.superclass = superclass;
+        this.methods = methods;
+    }
+
+    //Methods
+    FlexClass snapshot(Map<Object, Object> copies, boolean deep) { //methods follow their closures into the copied environments
+        FlexClass copy = (FlexClass) copies.get(this);
+        if (copy != null) return copy;
+
+        Map<String, FlexFunction> copiedMethods = new HashMap<>();
+        copy = new FlexClass(name, superclass == null ? null : superclass.snapshot(copies, deep), copiedMethods);
+        copies.put(this, copy);
+        for (Map.Entry<String, FlexFunction> method : methods.entrySet()) {
+            copiedMethods.put(method.getKey(), method.getValue().snapshot(copies, deep));
+        }
+        return copy;
+    }
+
+    Map<String, FlexFunction> declaredMethods() {
+        return methods;
+    }
+
+    FlexFunction findMethod(String name) {
+        FlexFunction method = methods.get(name);
+        if (method == null && superclass != null) return superclass.findMethod(name);
+        return method;
+    }
+
+    @Override
+    public int arity() {
+        FlexFunction initializer = findMethod("init");
+        return initializer == null ? 0 : initializer.arity();
+    }
+
+    @Override
+    public Object call(Interpreter interpreter, List<Object> arguments) {
+        FlexInstance instance = new FlexInstance(this);
+        interpreter.allocated++;
+        FlexFunction initializer = findMethod("init");
+        if (initializer != null) {
+            initializer.bind(instance).call(interpreter, arguments);
+        }
+        return instance;
+    }
+
+    @Override
+    public String toString() {
+        return "<" + name + " class>";
+    }
+}
@@ -0,0 +1,321 @@
+package com.filomar.interpreter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+//Independent interpreter instance: own globals, error state and output/error sinks
+//A context runs one program at a time, separate contexts can run in parallel on any threads
+public class FlexContext {
+    //Fields
+    public static final int EXIT_OK = 0;
+    public static final int EXIT_SYNTAX_ERROR = 65;
+    public static final int EXIT_RUNTIME_ERROR = 70;
+
+    final FlexOutput output;
+    final FlexMetrics metrics = new FlexMetrics();
+    private final PrintStream err;
+    final Interpreter interpreter;
+    private volatile FlexBudget budget = null;
+    private boolean hadError = false;
+    private volatile String lastRuntimeError = null; //tasks report from their own threads
+
+    //Constructors
+    public FlexContext() {
+        this(System.out, System.err);
+    }
+
+    public FlexContext(OutputStream out, OutputStream err) {
+        this(out, err, Interpreter::new);
+    }
+
+    private FlexContext(OutputStream out, OutputStream err, Function<FlexContext, Interpreter> interpreterFactory) {
+        this.output = new FlexOutput(out);
+        this.err = err instanceof PrintStream printStream ? printStream : new PrintStream(err, true);
+        this.interpreter = interpreterFactory.apply(this);
+    }
+
+    //Methods
+    //--Execution
+    public int run(String source) {
+        return execute(FlexProgram.compile(source, metrics));
+    }
+
+    public int execute(FlexProgram program) {
+        hadError = false;
+        lastRuntimeError = null;
+
+        if (program.hasErrors()) {
+            output.flush();
+            for (String error : program.errors()) err.println(error);
+            hadError = true;
+            return EXIT_SYNTAX_ERROR;
+        }
+
+        long start = System.nanoTime();
+        interpreter.govern(budget);
+        try {
+            interpreter.interpret(program.statements); //on the caller's thread, a carrier is never held for the whole run
+        } finally {
+            interpreter.govern(null);
+            metrics.executionNanos.add(System.nanoTime() - start);
+            output.flush();
+        }
+        return lastRuntimeError != null ? EXIT_RUNTIME_ERROR : EXIT_OK;
+    }
+
+    //Executes every top-level statement as soon as it is parsed and drops it afterwards, so output starts right away
+    //A syntax error still stops the program, but only once parsing reaches it: the statements before it have already run
+    public int runStreaming(String source) {
+        hadError = false;
+        lastRuntimeError = null;
+        ErrorReporter reporter = (line, column, message) -> {
+            notifyError(line, column, message);
+            hadError = true;
+        };
+
+        interpreter.govern(budget); //one budget for the whole source
+        try {
+            return onVirtualThread(() -> stream(source, reporter)); //a single hop for the whole stream
+        } finally {
+            interpreter.govern(null);
+            output.flush();
+        }
+    }
+
+    private int stream(String source, ErrorReporter reporter) {
+        long start = System.nanoTime();
+        List<Token> tokens = new Scanner(source, reporter).scanTokens();
+        metrics.scanNanos.add(System.nanoTime() - start);
+        if (hadError) return EXIT_SYNTAX_ERROR;
+
+        Parser parser = new Parser(tokens, reporter);
+        while (parser.hasNext()) {
+            start = System.nanoTime();
+            Stmt statement = parser.next();
+            long parsed = System.nanoTime();
+            metrics.parseNanos.add(parsed - start);
+            if (hadError) return EXIT_SYNTAX_ERROR;
+            boolean completed = interpreter.interpret(statement);
+            metrics.executionNanos.add(System.nanoTime() - parsed);
+            if (!completed) break;
+        }
+        return lastRuntimeError != null ? EXIT_RUNTIME_ERROR : EXIT_OK;
+    }
+
+    //Generators hand their values over between virtual threads, which is an order of magnitude cheaper than with a platform thread
+    //Only streaming runs take that hop, the one-shot command line path: execute() and invoke() stay on the caller's thread,
+    //where CPU-bound code cannot hold on to one of the few carrier threads shared by every other context of the JVM
+    private static <T> T onVirtualThread(Supplier<T> body) {
+        if (Thread.currentThread().isVirtual()) return body.get();
+
+        FutureTask<T> task = new FutureTask<>(body::get);
+        Thread.ofVirtual().name("flex-main").start(task);
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while running a program", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException exception) throw exception;
+            if (e.getCause() instanceof Error error) throw error;
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    //New context starting from a copy-on-write view of this one's globals, this context should stay idle while forks run
+    public FlexContext fork(OutputStream out, OutputStream err) {
+        Environment prelude = interpreter.globals;
+        return new FlexContext(out, err, context -> new Interpreter(context, Environment.viewOf(prelude)));
+    }
+
+    //Context whose interpreter and workers record execution counters, see CountingInterpreter
+    static FlexContext counting(OutputStream out, OutputStream err, FlexCounters counters) {
+        return new FlexContext(out, err, context -> new CountingInterpreter(context, counters));
+    }
+
+    //--Images
+    //Saves the globals, with every function, class and value reachable from them, built-in natives are saved by name
+    //Tasks, channels and host functions cannot be saved
+    public void saveImage(OutputStream out) throws IOException {
+        ImageWriter.save(interpreter.globals, out);
+    }
+
+    //New context owning the saved globals, as if it had run the saved program itself
+    public static FlexContext restoreImage(InputStream in, OutputStream out, OutputStream err) throws IOException {
+        Environment globals = ImageReader.restore(in);
+        return new FlexContext(out, err, context -> new Interpreter(context, globals));
+    }
+
+    //--Limits
+    //Budget for every following run, execute() and invoke() included, null lifts all limits
+    //Exceeding it stops the run with a runtime error, the context is then ready for the next one
+    public void setBudget(FlexBudget budget) {
+        this.budget = budget;
+    }
+
+    public FlexBudget budget() {
+        return budget;
+    }
+
+    public void flush() {
+        output.flush();
+        err.flush();
+    }
+
+    //--Monitoring
+    //Statistics of this context, see FlexMetrics.register() to publish them over JMX
+    public FlexMetrics metrics() {
+        return metrics;
+    }
+
+    //--Embedding
+    //Host values are converted on the way in: boxed integers become Flex integers, java.util lists and maps are copied
+    public void define(String name, Object value) {
+        interpreter.globals.createBinding(name, toFlex(value));
+    }
+
+    public void undefine(String name) {
+        interpreter.globals.removeBinding(name);
+    }
+
+    public boolean isDefined(String name) {
+        return interpreter.globals.hasLocalBinding(name);
+    }
+
+    public Object lookup(String name) {
+        return interpreter.globals.getLocalBinding(name);
+    }
+
+    public Map<String, Object> globals() { //everything but the built-in natives
+        Map<String, Object> globals = interpreter.globals.localBindings();
+        globals.values().removeIf(value -> value instanceof NativeFunction function && function.isBuiltin());
+        return globals;
+    }
+
+    public static FlexCallable function(String name, int arity, FlexHostFunction body) {
+        return NativeFunction.host(name, arity, body);
+    }
+
+    //Runtime errors are reported to the error sink as usual and leave lastRuntimeError() set, the result is then null
+    public Object invoke(Object callable, List<?> arguments) {
+        if (!(callable instanceof FlexCallable function)) throw new IllegalArgumentException(callable + " is not callable");
+        if (function.arity() != arguments.size()) {
+            throw new IllegalArgumentException("Expected " + function.arity() + " argument/s, found " + arguments.size());
+        }
+
+        List<Object> flexArguments = new ArrayList<>(arguments.size());
+        for (Object argument : arguments) flexArguments.add(toFlex(argument));
+
+        lastRuntimeError = null;
+        long start = System.nanoTime();
+        interpreter.govern(budget);
+        try {
+            return function.call(interpreter, flexArguments);
+        } catch (ResourceError error) { //the run stops here, like a top-level runtime error
+            onRuntimeError(error);
+            return null;
+        } catch (NativeFunction.NativeError error) {
+            metrics.runtimeErrors.increment();
+            output.flush();
+            err.println("ERROR: " + error.getMessage());
+            lastRuntimeError = error.getMessage();
+            return null;
+        } finally {
+            interpreter.govern(null);
+            metrics.executionNanos.add(System.nanoTime() - start);
+            output.flush();
+        }
+    }
+
+    public Object invokeMethod(Object instance, String name, List<?> arguments) {
+        if (!(instance instanceof FlexInstance object)) throw new IllegalArgumentException(instance + " is not an instance");
+
+        int slot = object.shape.slotOf(name);
+        if (slot >= 0) return invoke(object.slots[slot], arguments);
+
+        FlexFunction method = object.shape.owner.findMethod(name);
+        if (method == null) throw new IllegalArgumentException("Undefined method '" + name + "'.");
+        return invoke(method.bind(object), arguments);
+    }
+
+    public String lastRuntimeError() {
+        return lastRuntimeError;
+    }
+
+    static Object toFlex(Object value) {
+        if (value instanceof Integer || value instanceof Short || value instanceof Byte) return ((Number) value).longValue();
+        if (value instanceof Float number) return (double) number;
+        if (value instanceof Character character) return character.toString();
+        if (value instanceof Collection<?> collection) {
+            FlexList list = new FlexList();
+            for (Object element : collection) list.add(toFlex(element));
+            return list;
+        }
+        if (value instanceof Map<?, ?> map) {
+            FlexDict dict = new FlexDict();
+            for (Map.Entry<?, ?> entry : map.entrySet()) dict.put(toFlex(entry.getKey()), toFlex(entry.getValue()));
+            return dict;
+        }
+        return value;
+    }
+
+    //Flex lists and dicts come back as java.util copies, integers stay Long, instances and callables are handles
+    public static Object toJava(Object value) {
+        return toJava(value, new IdentityHashMap<>());
+    }
+
+    private static Object toJava(Object value, Map<Object, Object> copies) { //copies keep aliases and cycles
+        if (!(value instanceof FlexList || value instanceof FlexDict)) return value;
+
+        Object copy = copies.get(value);
+        if (copy != null) return copy;
+        if (value instanceof FlexList list) {
+            List<Object> copiedList = new ArrayList<>(list.size());
+            copies.put(list, copiedList);
+            for (int i = 0; i < list.size(); i++) copiedList.add(toJava(list.get(i), copies));
+            return copiedList;
+        }
+        FlexDict dict = (FlexDict) value;
+        Map<Object, Object> copiedDict = new LinkedHashMap<>();
+        copies.put(dict, copiedDict);
+        FlexList keys = dict.keys();
+        FlexList values = dict.values();
+        for (int i = 0; i < keys.size(); i++) copiedDict.put(toJava(keys.get(i), copies), toJava(values.get(i), copies));
+        return copiedDict;
+    }
+
+    //--Error handling
+    void onRuntimeError(RuntimeError error) {
+        metrics.runtimeErrors.increment();
+        FlexEvents.ScriptError event = new FlexEvents.ScriptError();
+        if (event.isEnabled()) {
+            event.message = error.getMessage();
+            event.line = error.token.line;
+            event.column = error.token.column;
+            event.commit();
+        }
+        notifyError(error.token.line, error.token.column, error.getMessage());
+        lastRuntimeError = formatError(error.token.line, error.token.column, error.getMessage());
+    }
+
+    private void notifyError(int line, int column, String message) {
+        output.flush(); //keep stdout and stderr interleaved as they were produced
+        err.println(formatError(line, column, message));
+    }
+
+    static String formatError(int line, int column, String message) {
+        return "[" + line + ":" + column + "] ERROR: " + message;
+    }
+}
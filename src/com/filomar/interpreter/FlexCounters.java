@@ -0,0 +1,147 @@
+package com.filomar.interpreter;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+//Execution counters per AST node, gathered by CountingInterpreter and keyed by the node source position
+//Binary operators record the operand types they saw, variable accesses how many scopes they walked, loops their iterations
+//Besides the report, the counters answer type feedback queries about single nodes
+final class FlexCounters {
+    //Nested classes
+    enum OperandTypes { INTEGER, NUMBER, STRING, MIXED, OTHER } //NUMBER has at least one double, MIXED a string with a non-string
+
+    enum Kind { BINARY, LOOKUP, ASSIGN, LOOP }
+
+    static final class Site {
+        final Kind kind;
+        final Token token;
+        final LongAdder count = new LongAdder();
+        private final LongAdder[] operandTypes; //binary sites only
+        private final LongAdder hops; //lookup and assign sites only
+        private final LongAccumulator maxHops;
+
+        private Site(Kind kind, Token token) {
+            this.kind = kind;
+            this.token = token;
+            boolean binary = kind == Kind.BINARY;
+            boolean access = kind == Kind.LOOKUP || kind == Kind.ASSIGN;
+            this.operandTypes = binary ? new LongAdder[OperandTypes.values().length] : null;
+            if (binary) for (int i = 0; i < operandTypes.length; i++) operandTypes[i] = new LongAdder();
+            this.hops = access ? new LongAdder() : null;
+            this.maxHops = access ? new LongAccumulator(Math::max, 0) : null;
+        }
+
+        Map<OperandTypes, Long> operandTypes() {
+            Map<OperandTypes, Long> types = new EnumMap<>(OperandTypes.class);
+            if (operandTypes == null) return types;
+            for (OperandTypes type : OperandTypes.values()) {
+                long seen = operandTypes[type.ordinal()].sum();
+                if (seen > 0) types.put(type, seen);
+            }
+            return types;
+        }
+
+        double averageHops() {
+            long executions = count.sum();
+            return hops == null || executions == 0 ? 0 : (double) hops.sum() / executions;
+        }
+
+        long maxHops() {
+            return maxHops == null ? 0 : maxHops.get();
+        }
+
+        private String describe() {
+            return switch (kind) {
+                case BINARY -> {
+                    StringBuilder types = new StringBuilder();
+                    long total = count.sum();
+                    for (Map.Entry<OperandTypes, Long> type : operandTypes().entrySet()) {
+                        if (!types.isEmpty()) types.append(", ");
+                        types.append(type.getKey().name().toLowerCase()).append(String.format(" %.1f%%", 100.0 * type.getValue() / total));
+                    }
+                    yield "'" + token.lexeme + "' " + types;
+                }
+                case LOOKUP, ASSIGN -> String.format("'%s' %.2f hops on average, %d at most", token.lexeme, averageHops(), maxHops());
+                case LOOP -> "'" + token.lexeme + "' iterations";
+            };
+        }
+    }
+
+    //Fields
+    private final Map<Object, Site> sites = new ConcurrentHashMap<>(); //AST node -> counters, nodes compare by identity
+
+    //Methods
+    //--Recording, called by CountingInterpreter from any of the program threads
+    void binary(Expr.Binary node, Object left, Object right) {
+        Site site = site(node, Kind.BINARY, node.operator);
+        site.count.increment();
+        site.operandTypes[classify(left, right).ordinal()].increment();
+    }
+
+    void access(Object node, Kind kind, Token identifier, int hops) {
+        Site site = site(node, kind, identifier);
+        site.count.increment();
+        if (hops >= 0) {
+            site.hops.add(hops);
+            site.maxHops.accumulate(hops);
+        }
+    }
+
+    void iteration(Stmt loop, Token keyword) {
+        site(loop, Kind.LOOP, keyword).count.increment();
+    }
+
+    private Site site(Object node, Kind kind, Token token) {
+        Site site = sites.get(node);
+        return site != null ? site : sites.computeIfAbsent(node, key -> new Site(kind, token));
+    }
+
+    static OperandTypes classify(Object left, Object right) {
+        if (left instanceof Long && right instanceof Long) return OperandTypes.INTEGER;
+        if (left instanceof String && right instanceof String) return OperandTypes.STRING;
+        boolean leftNumber = left instanceof Long || left instanceof Double;
+        boolean rightNumber = right instanceof Long || right instanceof Double;
+        if (leftNumber && rightNumber) return OperandTypes.NUMBER;
+        if (left instanceof String || right instanceof String) return OperandTypes.MIXED;
+        return OperandTypes.OTHER;
+    }
+
+    //--Type feedback
+    Site siteOf(Object node) { //null when the node never ran
+        return sites.get(node);
+    }
+
+    OperandTypes observedTypes(Expr.Binary node) { //the only operand types seen so far, MIXED when there were several, null if never run
+        Site site = sites.get(node);
+        if (site == null) return null;
+        Map<OperandTypes, Long> types = site.operandTypes();
+        return types.size() == 1 ? types.keySet().iterator().next() : OperandTypes.MIXED;
+    }
+
+    int observedHops(Expr.Variable node) { //scopes walked when always the same, -1 otherwise
+        Site site = sites.get(node);
+        if (site == null || site.maxHops() * site.count.sum() != site.hops.sum()) return -1;
+        return (int) site.maxHops();
+    }
+
+    //--Reporting
+    void report(PrintStream out, int top) {
+        List<Site> ranked = new ArrayList<>(sites.values());
+        ranked.sort((a, b) -> a.count.sum() != b.count.sum() ? Long.compare(b.count.sum(), a.count.sum())
+                : a.token.line != b.token.line ? Integer.compare(a.token.line, b.token.line)
+                : Integer.compare(a.token.column, b.token.column));
+
+        out.printf("%nHot paths: %d instrumented nodes%n", ranked.size());
+        out.printf("%14s  %-10s %-7s %s%n", "COUNT", "LINE:COL", "NODE", "DETAIL");
+        for (Site site : ranked.subList(0, Math.min(top, ranked.size()))) {
+            out.printf("%14d  %-10s %-7s %s%n", site.count.sum(), site.token.line + ":" + site.token.column,
+                    site.kind.name().toLowerCase(), site.describe());
+        }
+    }
+}
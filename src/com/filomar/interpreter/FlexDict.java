@@ -0,0 +1,218 @@
+package com.filomar.interpreter;
+
+import java.util.Arrays;
+
+public class FlexDict {
+    //Fields
+    private static final int SMALL_CAPACITY = 8; //up to here lookups are a linear scan over the entry arrays
+    private static final Object DELETED = new Object();
+
+    //Entries are kept in insertion order, iteration walks them directly
+    private Object[] keys = new Object[SMALL_CAPACITY];
+    private Object[] values = new Object[SMALL_CAPACITY];
+    private int[] hashes = new int[SMALL_CAPACITY];
+    private int used = 0; //entries slots taken, including deleted ones
+    private int size = 0;
+
+    //Open addressing index over the entries, only built past SMALL_CAPACITY
+    //Each slot packs the key hash in the high half and entry position + 1 in the low half, 0 is free
+    private long[] index = null;
+
+    //Methods
+    //--Dictionary operations
+    int size() {
+        return size;
+    }
+
+    boolean containsKey(Object key) {
+        return find(normalize(key)) >= 0;
+    }
+
+    Object get(Object key, Object fallback) {
+        int entry = find(normalize(key));
+        return entry >= 0 ? values[entry] : fallback;
+    }
+
+    void put(Object key, Object value) {
+        key = normalize(key);
+        int hash = hash(key);
+        int entry = index == null ? findIdentity(key) : -1;
+        if (entry < 0) entry = find(key, hash);
+        if (entry >= 0) {
+            values[entry] = value;
+            return;
+        }
+
+        if (used == keys.length) grow();
+        keys[used] = key;
+        values[used] = value;
+        hashes[used] = hash;
+        if (index != null) indexInsert(hash, used);
+        used++;
+        size++;
+    }
+
+    Object remove(Object key, Object fallback) {
+        int entry = find(normalize(key));
+        if (entry < 0) return fallback;
+
+        Object value = values[entry];
+        if (index == null) { //small layout stays dense, shift the tail left
+            System.arraycopy(keys, entry + 1, keys, entry, used - entry - 1);
+            System.arraycopy(values, entry + 1, values, entry, used - entry - 1);
+            System.arraycopy(hashes, entry + 1, hashes, entry, used - entry - 1);
+            used--;
+            keys[used] = null;
+            values[used] = null;
+        } else { //the index keeps pointing at the tombstone so probe chains stay intact
+            keys[entry] = DELETED;
+            values[entry] = null;
+        }
+        size--;
+        return value;
+    }
+
+    FlexList keys() {
+        FlexList list = new FlexList();
+        for (int i = 0; i < used; i++) {
+            if (keys[i] != DELETED) list.add(keys[i]);
+        }
+        return list;
+    }
+
+    FlexList values() {
+        FlexList list = new FlexList();
+        for (int i = 0; i < used; i++) {
+            if (keys[i] != DELETED) list.add(values[i]);
+        }
+        return list;
+    }
+
+    FlexList entries() {
+        FlexList list = new FlexList();
+        for (int i = 0; i < used; i++) {
+            if (keys[i] == DELETED) continue;
+            FlexList entry = new FlexList();
+            entry.add(keys[i]);
+            entry.add(values[i]);
+            list.add(entry);
+        }
+        return list;
+    }
+
+    @Override
+    public String toString() {
+        if (!FlexOutput.enterContainer(this)) return "{...}";
+        try {
+            StringBuilder builder = new StringBuilder("{");
+            boolean first = true;
+            for (int i = 0; i < used; i++) {
+                if (keys[i] == DELETED) continue;
+                if (!first) builder.append(", ");
+                builder.append(FlexOutput.stringify(keys[i])).append(": ").append(FlexOutput.stringify(values[i]));
+                first = false;
+            }
+            return builder.append("}").toString();
+        } finally {
+            FlexOutput.exitContainer(this);
+        }
+    }
+
+    //--Hashing
+    private static Object normalize(Object key) { //integral doubles share their slot with the equivalent integer
+        if (key instanceof Double number && number % 1 == 0 && Math.abs(number) < 0x1p63) return (long) (double) number;
+        return key;
+    }
+
+    private static int hash(Object key) {
+        if (key == null) return 0;
+        int h = key.hashCode() * 0x9E3779B9; //String caches its own hash, interned literals then hit the identity check
+        return h ^ (h >>> 16); //linear probing needs well-mixed low bits
+    }
+
+    private static boolean sameKey(Object stored, Object key) {
+        return stored == key || (stored != null && stored != DELETED && stored.equals(key));
+    }
+
+    private int find(Object key) {
+        if (index == null) {
+            int entry = findIdentity(key); //interned keys are found without hashing at all
+            if (entry >= 0) return entry;
+        }
+        return find(key, hash(key));
+    }
+
+    private int findIdentity(Object key) { //small layout only
+        for (int i = 0; i < used; i++) {
+            if (keys[i] == key) return i;
+        }
+        return -1;
+    }
+
+    private int find(Object key, int hash) {
+        if (index == null) {
+            for (int i = 0; i < used; i++) {
+                if (hashes[i] == hash && sameKey(keys[i], key)) return i;
+            }
+            return -1;
+        }
+
+        int mask = index.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            long packed = index[slot];
+            if (packed == 0) return -1;
+            int entry = (int) packed - 1;
+            if ((int) (packed >>> 32) == hash && sameKey(keys[entry], key)) return entry;
+        }
+    }
+
+    //--Storage management
+    private void grow() {
+        if (size < used) { //tombstones take at least a quarter of the entries, compact instead of growing
+            if (used - size >= used >> 2) {
+                compact();
+                return;
+            }
+        }
+
+        int capacity = keys.length * 2;
+        keys = Arrays.copyOf(keys, capacity);
+        values = Arrays.copyOf(values, capacity);
+        hashes = Arrays.copyOf(hashes, capacity);
+        rebuildIndex();
+    }
+
+    private void compact() {
+        int live = 0;
+        for (int i = 0; i < used; i++) {
+            if (keys[i] == DELETED) continue;
+            keys[live] = keys[i];
+            values[live] = values[i];
+            hashes[live] = hashes[i];
+            live++;
+        }
+        Arrays.fill(keys, live, used, null);
+        Arrays.fill(values, live, used, null);
+        used = live;
+        rebuildIndex();
+    }
+
+    private void rebuildIndex() {
+        if (keys.length <= SMALL_CAPACITY) {
+            index = null;
+            return;
+        }
+
+        index = new long[keys.length * 2]; //load factor never exceeds 1/2
+        for (int i = 0; i < used; i++) {
+            if (keys[i] != DELETED) indexInsert(hashes[i], i);
+        }
+    }
+
+    private void indexInsert(int hash, int entry) {
+        int mask = index.length - 1;
+        int slot = hash & mask;
+        while (index[slot] != 0) slot = (slot + 1) & mask;
+        index[slot] = ((long) hash << 32) | (entry + 1);
+    }
+}
@@ -0,0 +1,91 @@
+package com.filomar.interpreter;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+//Java Flight Recorder events of the interpreter, recorded next to the JVM's own GC and CPU events
+//Usual pattern: new, begin(), work, commit(). Outside a recording commit() does nothing and the JIT drops the event object
+//Java stack traces are left out, they would only show visitor frames
+final class FlexEvents {
+    //Constructors
+    private FlexEvents() {}
+
+    //Nested classes
+    @Name("com.filomar.flex.Scan")
+    @Label("Flex Scan")
+    @Category({"Flex", "Compilation"})
+    @Description("Scanner.scanTokens over a whole source")
+    @StackTrace(false)
+    static final class Scan extends Event {
+        @Label("Characters")
+        int characters;
+
+        @Label("Tokens")
+        int tokens;
+    }
+
+    @Name("com.filomar.flex.Parse")
+    @Label("Flex Parse")
+    @Category({"Flex", "Compilation"})
+    @Description("Parser.parse over a whole token list")
+    @StackTrace(false)
+    static final class Parse extends Event {
+        @Label("Tokens")
+        int tokens;
+
+        @Label("Statements")
+        int statements;
+    }
+
+    @Name("com.filomar.flex.Interpret")
+    @Label("Flex Interpret")
+    @Category({"Flex", "Execution"})
+    @Description("Top-level run of a program's statements")
+    @StackTrace(false)
+    static final class Interpret extends Event {
+        @Label("Statements")
+        int statements;
+
+        @Label("Completed")
+        @Description("False when a runtime error stopped the program")
+        boolean completed;
+    }
+
+    @Name("com.filomar.flex.FunctionCall")
+    @Label("Flex Function Call")
+    @Category({"Flex", "Execution"})
+    @Description("Call of a Flex function lasting longer than the threshold")
+    @Threshold("10 ms")
+    @StackTrace(false)
+    static final class FunctionCall extends Event {
+        @Label("Function")
+        String function;
+
+        @Label("Line")
+        int line;
+
+        @Label("Arguments")
+        int arguments;
+    }
+
+    @Name("com.filomar.flex.RuntimeError")
+    @Label("Flex Runtime Error")
+    @Category({"Flex", "Execution"})
+    @Description("Runtime error that reached the top level of a program")
+    @StackTrace(false)
+    static final class ScriptError extends Event {
+        @Label("Message")
+        String message;
+
+        @Label("Line")
+        int line;
+
+        @Label("Column")
+        int column;
+    }
+}
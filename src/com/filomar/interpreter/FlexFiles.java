@@ -0,0 +1,264 @@
+package com.filomar.interpreter;
+
+import com.filomar.interpreter.NativeFunction.NativeError;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+//File natives built for inputs far larger than the heap
+//Reads go through a FileChannel and a fixed buffer, only the current line is ever held, so a multi-gigabyte log streams in constant memory
+//A channel is preferred over mapping the file: a mapping stays alive until the buffer is collected, a channel is released on close
+final class FlexFiles {
+    //Fields
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final Charset CHARSET = Charset.defaultCharset(); //scripts are read with it too, lines split on '\n' bytes
+
+    //Constructors
+    private FlexFiles() {}
+
+    //Methods
+    //--Reading
+    static FlexIterator readLines(String path) {
+        return readRange(path, 0, Long.MAX_VALUE);
+    }
+
+    static FlexIterator readRange(String path, long start, long end) { //lines starting within [start, end), ranges from chunks() start on a line
+        if (start < 0 || start > end) throw new NativeError("Invalid byte range " + start + ".." + end);
+        try {
+            FileChannel channel = FileChannel.open(Path.of(path), StandardOpenOption.READ);
+            return new LineReader(path, channel, start, Math.min(end, channel.size()));
+        } catch (IOException | RuntimeException e) {
+            throw failure("read", path, e);
+        }
+    }
+
+    static long fileSize(String path) {
+        try (FileChannel channel = FileChannel.open(Path.of(path), StandardOpenOption.READ)) {
+            return channel.size();
+        } catch (IOException | RuntimeException e) {
+            throw failure("read", path, e);
+        }
+    }
+
+    static FlexList chunks(String path, long size) { //[start, end] byte ranges of about size bytes each, cut right after a '\n'
+        if (size < 1) throw new NativeError("Chunk size must be positive");
+        FlexList chunks = new FlexList();
+        try (FileChannel channel = FileChannel.open(Path.of(path), StandardOpenOption.READ)) {
+            long length = channel.size();
+            ByteBuffer probe = ByteBuffer.allocate(4096);
+            long start = 0;
+            while (start < length) {
+                long end = start + size >= length ? length : lineEnd(channel, start + size, length, probe);
+                FlexList chunk = new FlexList();
+                chunk.add(start);
+                chunk.add(end);
+                chunks.add(chunk);
+                start = end;
+            }
+        } catch (IOException | RuntimeException e) {
+            throw failure("read", path, e);
+        }
+        return chunks;
+    }
+
+    private static long lineEnd(FileChannel channel, long position, long length, ByteBuffer probe) throws IOException {
+        while (position < length) {
+            probe.clear();
+            int read = channel.read(probe, position);
+            if (read < 0) break;
+            for (int i = 0; i < read; i++) {
+                if (probe.get(i) == '\n') return position + i + 1;
+            }
+            position += read;
+        }
+        return length;
+    }
+
+    //--Writing
+    static long writeAll(String path, Object content) {
+        return write(path, content, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    static long append(String path, Object content) {
+        return write(path, content, StandardOpenOption.APPEND);
+    }
+
+    //Strings are written as they are, lists and iterators one element per line, so a whole pipeline can stream to disk
+    private static long write(String path, Object content, OpenOption mode) {
+        try (FileChannel channel = FileChannel.open(Path.of(path), StandardOpenOption.CREATE, StandardOpenOption.WRITE, mode)) {
+            ChannelWriter writer = new ChannelWriter(channel);
+            if (content instanceof FlexIterator iterator) {
+                try {
+                    while (iterator.hasNext()) writer.writeLine(iterator.next());
+                } finally {
+                    iterator.close();
+                }
+            } else if (content instanceof FlexList list) {
+                for (int i = 0; i < list.size(); i++) writer.writeLine(list.get(i));
+            } else {
+                writer.write(FlexOutput.stringify(content));
+            }
+            writer.flush();
+            return writer.written;
+        } catch (IOException | RuntimeException e) {
+            if (e instanceof NativeError || e instanceof RuntimeError) throw (RuntimeException) e;
+            throw failure("write", path, e);
+        }
+    }
+
+    private static NativeError failure(String action, String path, Exception e) {
+        String reason = e instanceof NoSuchFileException ? "no such file"
+                : e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+        return new NativeError("Cannot " + action + " file '" + path + "': " + reason);
+    }
+
+    //--Streaming
+    private static final class LineReader implements FlexIterator {
+        private final String path;
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        private long position; //file offset of the next read
+        private long bufferStart = 0; //file offset of the buffered bytes
+        private final long end;
+        private byte[] line = new byte[256];
+        private int lineLength = 0;
+        private String pending = null;
+        private boolean exhausted = false;
+
+        private LineReader(String path, FileChannel channel, long start, long end) {
+            this.path = path;
+            this.channel = channel;
+            this.position = start;
+            this.end = end;
+            buffer.limit(0);
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (pending == null && !exhausted) pending = readLine();
+            return pending != null;
+        }
+
+        @Override
+        public Object next() {
+            hasNext();
+            String next = pending;
+            pending = null;
+            return next;
+        }
+
+        @Override
+        public void close() {
+            exhausted = true;
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                //nothing was written, there is nothing to lose
+            }
+        }
+
+        private String readLine() {
+            while (true) {
+                if (!buffer.hasRemaining() && !fill()) {
+                    close();
+                    return lineLength > 0 ? takeLine() : null;
+                }
+                if (lineLength == 0 && bufferStart + buffer.position() >= end) { //next line belongs to the following range
+                    close();
+                    return null;
+                }
+
+                byte[] bytes = buffer.array();
+                int from = buffer.position();
+                int limit = buffer.limit();
+                for (int i = from; i < limit; i++) {
+                    if (bytes[i] != '\n') continue;
+                    append(bytes, from, i - from);
+                    buffer.position(i + 1);
+                    return takeLine();
+                }
+                append(bytes, from, limit - from);
+                buffer.position(limit);
+            }
+        }
+
+        private boolean fill() { //lines starting before end are read to their own end, past the range if needed
+            if (position >= end && lineLength == 0) return false;
+            try {
+                buffer.clear();
+                int read = channel.read(buffer, position);
+                buffer.flip();
+                if (read <= 0) return false;
+                bufferStart = position;
+                position += read;
+                return true;
+            } catch (IOException e) {
+                close();
+                throw failure("read", path, e);
+            }
+        }
+
+        private void append(byte[] bytes, int from, int length) {
+            if (lineLength + length > line.length) line = Arrays.copyOf(line, Math.max(line.length * 2, lineLength + length));
+            System.arraycopy(bytes, from, line, lineLength, length);
+            lineLength += length;
+        }
+
+        private String takeLine() {
+            int length = lineLength;
+            if (length > 0 && line[length - 1] == '\r') length--;
+            lineLength = 0;
+            return new String(line, 0, length, CHARSET);
+        }
+
+        @Override
+        public String toString() {
+            return "<lines " + path + ">";
+        }
+    }
+
+    private static final class ChannelWriter {
+        private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(CHARSET);
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        private long written = 0;
+
+        private ChannelWriter(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void writeLine(Object value) throws IOException {
+            write(FlexOutput.stringify(value));
+            write(LINE_SEPARATOR);
+        }
+
+        void write(String string) throws IOException {
+            write(string.getBytes(CHARSET));
+        }
+
+        void write(byte[] bytes) throws IOException {
+            int offset = 0;
+            while (offset < bytes.length) {
+                if (!buffer.hasRemaining()) flush();
+                int length = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.put(bytes, offset, length);
+                offset += length;
+            }
+            written += bytes.length;
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) channel.write(buffer);
+            buffer.clear();
+        }
+    }
+}
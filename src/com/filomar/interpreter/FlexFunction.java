@@ -1,14 +1,62 @@
 package com.filomar.interpreter;
 
 import java.util.List;
+import java.util.Map;
 
 public class FlexFunction implements FlexCallable{
     private final Stmt.FunDcl declaration;
     private final Environment closure;
+    private final boolean isInitializer;
+    private final Environment home; //globals at the root of the closure, invoked from another context the body still reads its own
 
     FlexFunction(Stmt.FunDcl declaration, Environment environment) {
+        this(declaration, environment, false);
+    }
+
+    FlexFunction(Stmt.FunDcl declaration, Environment environment, boolean isInitializer) {
+        this(declaration, environment, isInitializer, root(environment));
+    }
+
+    private FlexFunction(Stmt.FunDcl declaration, Environment environment, boolean isInitializer, Environment home) {
         this.declaration = declaration;
         this.closure = environment;
+        this.isInitializer = isInitializer;
+        this.home = home;
+    }
+
+    private static Environment root(Environment environment) { //captured scopes are never pooled, the chain cannot change
+        while (environment.enclosing() != null) environment = environment.enclosing();
+        return environment;
+    }
+
+    Stmt.FunDcl declaration() {
+        return declaration;
+    }
+
+    Environment closure() {
+        return closure;
+    }
+
+    boolean isInitializer() {
+        return isInitializer;
+    }
+
+    Environment home() {
+        return home;
+    }
+
+    FlexFunction snapshot(Map<Object, Object> copies) {
+        return snapshot(copies, false);
+    }
+
+    FlexFunction snapshot(Map<Object, Object> copies, boolean deep) { //deep copies mutable values too, see Environment.snapshotValue()
+        return new FlexFunction(declaration, closure.snapshot(copies, deep), isInitializer);
+    }
+
+    FlexFunction bind(FlexInstance instance) {
+        Environment environment = new Environment(closure);
+        environment.createBinding("this", instance);
+        return new FlexFunction(declaration, environment, isInitializer, home);
     }
 
     @Override
@@ -18,12 +66,53 @@ public class FlexFunction implements FlexCallable{
 
     @Override
     public Object call(Interpreter interpreter, List<Object> arguments) {
-        Environment environment = new Environment(this.closure);
+        FlexMetrics metrics = interpreter.metrics;
+        metrics.calls.increment();
+        Environment environment;
+        if (declaration.scopeEscapes) {
+            environment = new Environment(this.closure);
+            metrics.environments.increment();
+        } else {
+            environment = interpreter.acquireScope(this.closure);
+        }
+        interpreter.allocated++;
         for (int i = 0; i < declaration.parameters.size(); i++) {
             environment.createBinding(declaration.parameters.get(i).lexeme, arguments.get(i));
         }
-        interpreter.executeBlock(declaration.body, environment);
-        return null;
+        if (declaration.isGenerator) return new FlexGenerator(interpreter, this, environment); //the body only starts running on the first value asked for
+
+        FlexGovernor governor = interpreter.governor;
+        if (governor != null) governor.enterCall(interpreter, declaration.identifier);
+        FlexProfiler.Stack frames = interpreter.frames;
+        if (frames != null) frames.push(declaration);
+        metrics.callDepth.increment();
+        FlexEvents.FunctionCall event = new FlexEvents.FunctionCall();
+        event.begin();
+
+        Environment caller = interpreter.home;
+        interpreter.home = home;
+        Object value = null;
+        try {
+            interpreter.executeBlock(declaration.body, environment);
+        } catch (Interpreter.ReturnEx returnEx) {
+            value = returnEx.value;
+        } catch (StackOverflowError error) { //runaway recursion without a call depth limit
+            throw new ResourceError(declaration.identifier, "Stack overflow.");
+        } finally {
+            interpreter.home = caller;
+            if (!declaration.scopeEscapes) interpreter.releaseScope(environment);
+            if (governor != null) interpreter.callDepth--;
+            if (frames != null) frames.pop();
+            metrics.callDepth.decrement();
+            event.end();
+            if (event.shouldCommit()) { //only calls above the threshold get this far
+                event.function = declaration.identifier.lexeme;
+                event.line = declaration.identifier.line;
+                event.arguments = arguments.size();
+                event.commit();
+            }
+        }
+        return isInitializer ? closure.getLocalBinding("this") : value;
     }
 
     @Override
@@ -0,0 +1,165 @@
+package com.filomar.interpreter;
+
+import java.lang.ref.Cleaner;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+//Values produced by a call to a generator function, computed one at a time on demand
+//The body runs on its own virtual thread with its own interpreter, suspended in every yield until the next value is asked for
+//Consumer and producer strictly take turns, so the body sees its closure exactly like a plain function call would
+public class FlexGenerator implements FlexIterator {
+    //Nested classes
+    private static class GeneratorClosed extends RuntimeException { //unwinds a suspended body once its generator is closed
+        GeneratorClosed() {
+            super(null, null, false, false);
+        }
+    }
+
+    //State shared with the producer thread, must not reference the generator itself so that it can be collected
+    static final class Handoff implements Runnable {
+        private static final int CONSUMER_TURN = 0;
+        private static final int PRODUCER_TURN = 1;
+
+        private final Interpreter worker;
+        private final Stmt.FunDcl declaration;
+        private final Environment environment;
+
+        private Thread producer = null;
+        private volatile Thread consumer = null;
+        private volatile int turn = CONSUMER_TURN; //every field below is published by the write to turn
+        private boolean closed = false;
+        private boolean done = false;
+        private Object value = null;
+        private Throwable failure = null;
+
+        private Handoff(Interpreter worker, Stmt.FunDcl declaration, Environment environment) {
+            this.worker = worker;
+            this.declaration = declaration;
+            this.environment = environment;
+        }
+
+        //--Consumer side
+        boolean advance() { //runs the body up to its next yield, false once it finished
+            if (done) return false;
+            consumer = Thread.currentThread();
+            turn = PRODUCER_TURN;
+            if (producer == null) {
+                producer = Thread.ofVirtual().name("flex-generator").start(this);
+            } else {
+                LockSupport.unpark(producer);
+            }
+            while (turn != CONSUMER_TURN) LockSupport.park(this);
+
+            if (failure != null) {
+                Throwable error = failure;
+                failure = null;
+                if (error instanceof RuntimeException exception) throw exception;
+                if (error instanceof Error fatal) throw fatal;
+                throw new IllegalStateException(error);
+            }
+            return !done;
+        }
+
+        Object take() {
+            Object taken = value;
+            value = null;
+            return taken;
+        }
+
+        void close() { //a suspended body resumes and unwinds before this returns
+            if (closed) return;
+            closed = true;
+            if (producer == null || done) {
+                done = true;
+                return;
+            }
+            consumer = Thread.currentThread();
+            turn = PRODUCER_TURN;
+            LockSupport.unpark(producer);
+            while (turn != CONSUMER_TURN) LockSupport.park(this);
+        }
+
+        //--Producer side
+        void produce(Object value) {
+            this.value = value;
+            turn = CONSUMER_TURN;
+            LockSupport.unpark(consumer);
+            while (turn != PRODUCER_TURN) LockSupport.park(this);
+            if (closed) throw new GeneratorClosed();
+        }
+
+        @Override
+        public void run() {
+            FlexProfiler.Stack frames = worker.frames;
+            if (frames != null) frames.push(declaration);
+            try {
+                if (!closed) worker.executeBlock(declaration.body, environment);
+            } catch (Interpreter.ReturnEx | GeneratorClosed ignored) {
+                //a return ends the sequence, its value is dropped
+            } catch (Throwable error) {
+                failure = error;
+            } finally {
+                if (frames != null) frames.pop();
+                done = true;
+                value = null;
+                turn = CONSUMER_TURN;
+                LockSupport.unpark(consumer);
+            }
+        }
+    }
+
+    //Fields
+    //Generators dropped before their end still hold a suspended thread, the cleaner only queues them up:
+    //the cleaner thread waking them would sit behind the handoffs in the scheduler queue, so consumers release them instead
+    private static final Cleaner CLEANER = Cleaner.create();
+    private static final Queue<Handoff> ABANDONED = new ConcurrentLinkedQueue<>();
+
+    private final String name;
+    private final Handoff handoff;
+    private final Cleaner.Cleanable cleanable;
+    private boolean buffered = false; //hasNext() already advanced the body to a value that next() has not taken yet
+
+    //Constructors
+    FlexGenerator(Interpreter parent, FlexFunction function, Environment environment) {
+        releaseAbandoned();
+        this.name = function.declaration().identifier.lexeme;
+        Interpreter worker = parent.worker();
+        this.handoff = new Handoff(worker, function.declaration(), environment);
+        worker.yieldTarget = handoff;
+        worker.home = function.home(); //the body runs on the worker without going through call()
+        Handoff state = handoff;
+        this.cleanable = CLEANER.register(this, () -> ABANDONED.add(state));
+    }
+
+    //Methods
+    private static void releaseAbandoned() {
+        for (Handoff abandoned = ABANDONED.poll(); abandoned != null; abandoned = ABANDONED.poll()) abandoned.close();
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (!buffered) buffered = handoff.advance();
+        return buffered;
+    }
+
+    @Override
+    public Object next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        buffered = false;
+        return handoff.take();
+    }
+
+    @Override
+    public void close() {
+        buffered = false;
+        handoff.close();
+        cleanable.clean(); //queues the handoff, closing it again is a no-op
+    }
+
+    @Override
+    public String toString() {
+        return "<" + name + " generator>";
+    }
+}
@@ -0,0 +1,72 @@
+package com.filomar.interpreter;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+//Enforces a FlexBudget over one run, shared by the run's worker interpreters and dropped once it ends
+//Interpreters count statements and allocations in plain fields, checks move them into the shared totals
+//Tasks spawned by the run are tracked and cancelled when it ends: a finished governor fails every check
+final class FlexGovernor {
+    //Fields
+    private final FlexBudget budget;
+    private final long deadline; //System.nanoTime() based, Long.MAX_VALUE without a wall time limit
+    private final AtomicLong statements = new AtomicLong();
+    private final AtomicLong allocations = new AtomicLong();
+    private final Set<Thread> tasks = ConcurrentHashMap.newKeySet();
+    private volatile boolean finished = false;
+
+    //Constructors
+    FlexGovernor(FlexBudget budget) {
+        this.budget = budget;
+        this.deadline = budget.maxWallTime() == null ? Long.MAX_VALUE : System.nanoTime() + budget.maxWallTime().toNanos();
+    }
+
+    //Methods
+    //--Tasks
+    void startTask(Thread task) { //before the thread starts, so finish() cannot miss it
+        tasks.add(task);
+    }
+
+    void endTask(Thread task) {
+        tasks.remove(task);
+    }
+
+    void finish() { //tasks still running stop at their next check, the ones waiting on a channel are woken up for it
+        finished = true;
+        for (Thread task : tasks) task.interrupt();
+    }
+
+    boolean isFinished() {
+        return finished;
+    }
+
+    //--Checks
+    void enterCall(Interpreter interpreter, Token site) { //the depth only grows once every check passed, the caller undoes it on exit
+        if (interpreter.callDepth >= budget.maxCallDepth()) {
+            throw new ResourceError(site, "Execution budget exceeded: call depth above " + budget.maxCallDepth() + ".");
+        }
+        check(interpreter, site);
+        interpreter.callDepth++;
+    }
+
+    void check(Interpreter interpreter, Token site) { //loop back-edges and calls
+        if (finished) throw new ResourceError(site, "Task cancelled: the run that spawned it has ended.");
+
+        long executed = statements.addAndGet(interpreter.executed);
+        interpreter.executed = 0;
+        if (executed > budget.maxStatements()) {
+            throw new ResourceError(site, "Execution budget exceeded: more than " + budget.maxStatements() + " statements.");
+        }
+
+        long allocated = interpreter.allocated == 0 ? allocations.get() : allocations.addAndGet(interpreter.allocated);
+        interpreter.allocated = 0;
+        if (allocated > budget.maxAllocations()) {
+            throw new ResourceError(site, "Execution budget exceeded: more than " + budget.maxAllocations() + " allocations.");
+        }
+
+        if (deadline != Long.MAX_VALUE && System.nanoTime() - deadline > 0) {
+            throw new ResourceError(site, "Execution budget exceeded: wall time above " + budget.maxWallTime().toMillis() + " ms.");
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.filomar.interpreter;
+
+import java.util.List;
+
+//Java code exposed to scripts through FlexContext.function(), arguments arrive as Flex values
+@FunctionalInterface
+public interface FlexHostFunction {
+    Object call(List<Object> arguments) throws Exception;
+}
@@ -0,0 +1,29 @@
+package com.filomar.interpreter;
+
+import java.util.Arrays;
+
+public class FlexInstance {
+    //Fields
+    private static final Object[] NO_SLOTS = new Object[0];
+
+    Shape shape;
+    Object[] slots = NO_SLOTS;
+
+    //Constructors
+    FlexInstance(FlexClass klass) {
+        this.shape = klass.rootShape;
+    }
+
+    //Methods
+    void grow(Shape next) { //moves to a shape with exactly one more field
+        if (slots.length < next.slotCount()) {
+            slots = Arrays.copyOf(slots, Math.max(4, slots.length * 2));
+        }
+        shape = next;
+    }
+
+    @Override
+    public String toString() {
+        return "<" + shape.owner.name + " instance>";
+    }
+}
@@ -0,0 +1,251 @@
+package com.filomar.interpreter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+//Attaches listeners to the statements and function calls of a program, for tracers, debuggers, coverage and the like
+//Matching sites get a Stmt.Probe node swapped into the tree, detaching their last listener swaps the original back:
+//code without listeners runs exactly as if nothing had ever been attached
+//Swaps only replace single list slots and fields, so programs may keep running while they are instrumented, on any thread:
+//statements already executing finish unchanged, later ones see the swap once it is visible to their thread
+public final class FlexInstruments {
+    //Nested classes
+    public static final class Binding {
+        private final FlexListener listener;
+        private final List<FlexProbe> probes = new ArrayList<>();
+        private boolean detached = false;
+
+        private Binding(FlexListener listener) {
+            this.listener = listener;
+        }
+
+        public int sites() {
+            synchronized (FlexInstruments.class) {
+                return probes.size();
+            }
+        }
+
+        public void detach() {
+            synchronized (FlexInstruments.class) {
+                if (detached) return;
+                detached = true;
+                for (FlexProbe probe : probes) {
+                    probe.listeners.remove(listener);
+                    if (probe.listeners.isEmpty()) uninstall(probe);
+                }
+                probes.clear();
+            }
+        }
+    }
+
+    //Fields
+    //Installed probes by original node, calls apart since a declaration is also a statement
+    private static final Map<Stmt, FlexProbe> statementProbes = new WeakHashMap<>();
+    private static final Map<Stmt, FlexProbe> callProbes = new WeakHashMap<>();
+
+    private final Predicate<FlexProbe> filter;
+    private final Binding binding;
+    private final Set<Stmt> visited = Collections.newSetFromMap(new IdentityHashMap<>()); //functions reachable more than once
+    private int lastLine = 0;
+
+    //Constructors
+    private FlexInstruments(Predicate<FlexProbe> filter, FlexListener listener) {
+        this.filter = filter;
+        this.binding = new Binding(listener);
+    }
+
+    //Methods
+    //--Attaching
+    public static synchronized Binding attach(FlexProgram program, Predicate<FlexProbe> filter, FlexListener listener) {
+        if (program.hasErrors()) throw new IllegalArgumentException("Cannot instrument a program with syntax errors"); //failed declarations leave null statements
+        FlexInstruments instruments = new FlexInstruments(filter, listener);
+        instruments.walk(() -> program.statements, null);
+        return instruments.binding;
+    }
+
+    //Functions and class methods bound in the context globals, e.g. loaded from a prelude or an image
+    public static synchronized Binding attach(FlexContext context, Predicate<FlexProbe> filter, FlexListener listener) {
+        FlexInstruments instruments = new FlexInstruments(filter, listener);
+        for (Object value : context.interpreter.globals.localBindings().values()) {
+            if (value instanceof FlexFunction function) {
+                instruments.function(function.declaration());
+            } else if (value instanceof FlexClass flexClass) {
+                for (FlexFunction method : flexClass.declaredMethods().values()) instruments.function(method.declaration());
+            }
+        }
+        return instruments.binding;
+    }
+
+    //--Filters
+    public static Predicate<FlexProbe> statements() {
+        return probe -> !probe.isCall();
+    }
+
+    public static Predicate<FlexProbe> calls() {
+        return FlexProbe::isCall;
+    }
+
+    public static Predicate<FlexProbe> kind(String kind) {
+        return probe -> probe.kind().equals(kind);
+    }
+
+    public static Predicate<FlexProbe> lines(int from, int to) {
+        return probe -> probe.line() >= from && probe.line() <= to;
+    }
+
+    public static Predicate<FlexProbe> function(String name) {
+        return probe -> name.equals(probe.function());
+    }
+
+    //--Tree walk
+    //Statement lists are fetched through the supplier on every swap, a call probe moves a function body into its own node
+    private void walk(Supplier<List<Stmt>> container, String function) {
+        List<Stmt> statements = container.get();
+        for (int i = 0; i < statements.size(); i++) {
+            Stmt statement = unwrap(statements.get(i));
+            FlexProbe probe = statementProbe(statement, function);
+            if (probe != null && probe.restore == null) {
+                Stmt.Probe node = probe.node;
+                container.get().set(i, node);
+                probe.restore = () -> {
+                    List<Stmt> current = container.get();
+                    current.set(current.indexOf(node), statement);
+                };
+            }
+            children(statement, function);
+        }
+    }
+
+    private void child(Stmt statement, String function, Consumer<Stmt> slot) { //single statement children
+        Stmt original = unwrap(statement);
+        FlexProbe probe = statementProbe(original, function);
+        if (probe != null && probe.restore == null) {
+            slot.accept(probe.node);
+            probe.restore = () -> slot.accept(original);
+        }
+        children(original, function);
+    }
+
+    private void children(Stmt statement, String function) {
+        switch (statement) {
+            case Stmt.Block block -> walk(() -> block.statements, function);
+            case Stmt.FunDcl declaration -> function(declaration);
+            case Stmt.ClassDcl classDcl -> {
+                for (Stmt.FunDcl method : classDcl.methods) function(method);
+            }
+            case Stmt.If ifStmt -> {
+                child(ifStmt.thenBranch, function, branch -> ifStmt.thenBranch = branch);
+                if (ifStmt.elseBranch != null) child(ifStmt.elseBranch, function, branch -> ifStmt.elseBranch = branch);
+            }
+            case Stmt.While whileStmt -> child(whileStmt.body, function, body -> whileStmt.body = body);
+            case Stmt.ForIn forIn -> child(forIn.body, function, body -> forIn.body = body);
+            default -> {}
+        }
+    }
+
+    private void function(Stmt.FunDcl declaration) {
+        if (!visited.add(declaration)) return;
+
+        FlexProbe probe = callProbes.get(declaration);
+        if (probe == null) probe = new FlexProbe(declaration);
+        if (filter.test(probe)) {
+            if (probe.restore == null) { //a new body list, calls already running keep iterating the original one
+                List<Stmt> original = declaration.body;
+                declaration.body = List.of(probe.node);
+                callProbes.put(declaration, probe);
+                probe.restore = () -> declaration.body = original;
+            }
+            listen(probe);
+        }
+
+        lastLine = declaration.identifier.line;
+        walk(() -> body(declaration), declaration.identifier.lexeme);
+    }
+
+    //Probe for the statement if the filter selects it, registered but not yet swapped in when new
+    private FlexProbe statementProbe(Stmt statement, String function) {
+        FlexProbe probe = statementProbes.get(statement);
+        if (probe == null) {
+            int line = line(statement);
+            if (line > 0) lastLine = line;
+            probe = new FlexProbe(statement, lastLine, function);
+        } else {
+            lastLine = probe.line();
+        }
+        if (!filter.test(probe)) return null;
+
+        statementProbes.put(statement, probe);
+        listen(probe);
+        return probe;
+    }
+
+    private void listen(FlexProbe probe) {
+        if (probe.listeners.contains(binding.listener)) return; //attached to the same site through another path
+        probe.listeners.add(binding.listener);
+        binding.probes.add(probe);
+    }
+
+    private static void uninstall(FlexProbe probe) {
+        if (probe.restore != null) probe.restore.run();
+        probe.restore = null;
+        if (probe.isCall()) callProbes.remove(probe.original);
+        else statementProbes.remove(probe.original);
+    }
+
+    private static Stmt unwrap(Stmt statement) {
+        return statement instanceof Stmt.Probe probe && !probe.probe.isCall() ? probe.probe.original : statement;
+    }
+
+    private static List<Stmt> body(Stmt.FunDcl declaration) { //statements of a function, wherever a call probe put them
+        List<Stmt> body = declaration.body;
+        if (body.size() == 1 && body.get(0) instanceof Stmt.Probe probe && probe.probe.isCall()) return probe.statements;
+        return body;
+    }
+
+    //--Source lines
+    private static int line(Stmt statement) { //0 when no token is reachable, e.g. for break
+        return switch (statement) {
+            case Stmt.ClassDcl node -> node.identifier.line;
+            case Stmt.FunDcl node -> node.identifier.line;
+            case Stmt.VarDcl node -> node.identifier.line;
+            case Stmt.Block node -> node.statements.isEmpty() ? 0 : line(unwrap(node.statements.get(0)));
+            case Stmt.ForIn node -> node.identifier.line;
+            case Stmt.If node -> line(node.condition);
+            case Stmt.Print node -> line(node.value);
+            case Stmt.Return node -> node.value == null ? 0 : line(node.value);
+            case Stmt.While node -> node.keyword.line;
+            case Stmt.Yield node -> node.keyword.line;
+            case Stmt.Expression node -> line(node.expression);
+            default -> 0;
+        };
+    }
+
+    private static int line(Expr expression) {
+        return switch (expression) {
+            case Expr.Assign node -> node.identifier.line;
+            case Expr.Logical node -> line(node.left);
+            case Expr.Binary node -> line(node.left);
+            case Expr.Unary node -> node.operator.line;
+            case Expr.Call node -> line(node.callee);
+            case Expr.ListLiteral node -> node.bracket.line;
+            case Expr.Index node -> line(node.object);
+            case Expr.IndexAssign node -> line(node.object);
+            case Expr.DictLiteral node -> node.brace.line;
+            case Expr.Get node -> line(node.object);
+            case Expr.Set node -> line(node.object);
+            case Expr.This node -> node.keyword.line;
+            case Expr.Super node -> node.keyword.line;
+            case Expr.Variable node -> node.identifier.line;
+            case Expr.Grouping node -> line(node.expression);
+            default -> 0; //literals carry no token
+        };
+    }
+}
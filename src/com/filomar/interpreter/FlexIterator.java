@@ -0,0 +1,47 @@
+package com.filomar.interpreter;
+
+//Lazy sequence of values consumed by for-in loops and the hasNext/next natives
+public interface FlexIterator {
+    boolean hasNext();
+
+    Object next();
+
+    default void close() {} //called when a loop stops early, releases whatever produces the values
+
+    static FlexIterator over(FlexList list) { //reads the size on every step, like an index loop would
+        return new FlexIterator() {
+            private int position = 0;
+
+            @Override
+            public boolean hasNext() {
+                return position < list.size();
+            }
+
+            @Override
+            public Object next() {
+                return list.get(position++);
+            }
+        };
+    }
+
+    static FlexIterator range(long start, long end) {
+        return new FlexIterator() {
+            private long current = start;
+
+            @Override
+            public boolean hasNext() {
+                return current < end;
+            }
+
+            @Override
+            public Object next() {
+                return current++;
+            }
+
+            @Override
+            public String toString() {
+                return "<range " + start + ".." + end + ">";
+            }
+        };
+    }
+}
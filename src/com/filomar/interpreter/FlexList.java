@@ -0,0 +1,308 @@
+package com.filomar.interpreter;
+
+import java.util.Arrays;
+
+public class FlexList {
+    //Fields
+    private Storage storage;
+
+    //Constructors
+    FlexList() {
+        this.storage = EmptyStorage.INSTANCE;
+    }
+
+    private FlexList(Storage storage) {
+        this.storage = storage;
+    }
+
+    //Methods
+    //--List operations
+    int size() {
+        return storage.size();
+    }
+
+    Object get(int index) {
+        return storage.get(index);
+    }
+
+    void set(int index, Object value) {
+        storage = storage.set(index, value);
+    }
+
+    void add(Object value) {
+        storage = storage.add(value);
+    }
+
+    void insert(int index, Object value) {
+        storage = storage.insert(index, value);
+    }
+
+    Object remove(int index) {
+        Object value = storage.get(index);
+        storage = storage.remove(index);
+        return value;
+    }
+
+    FlexList slice(int from, int to) {
+        return new FlexList(storage.slice(from, to));
+    }
+
+    String strategy() {
+        return storage.getClass().getSimpleName();
+    }
+
+    @Override
+    public String toString() {
+        if (!FlexOutput.enterContainer(this)) return "[...]";
+        try {
+            StringBuilder builder = new StringBuilder("[");
+            for (int i = 0; i < storage.size(); i++) {
+                if (i > 0) builder.append(", ");
+                builder.append(FlexOutput.stringify(storage.get(i)));
+            }
+            return builder.append("]").toString();
+        } finally {
+            FlexOutput.exitContainer(this);
+        }
+    }
+
+    //Storage strategies
+    //Every list starts empty and moves to the most specialized storage able to hold all of its elements:
+    //EmptyStorage -> LongStorage -> DoubleStorage -> ObjectStorage, never backwards
+    private static abstract class Storage {
+        abstract int size();
+        abstract Object get(int index);
+        abstract Storage set(int index, Object value);
+        abstract Storage insert(int index, Object value);
+        abstract Storage remove(int index);
+        abstract Storage slice(int from, int to);
+
+        Storage add(Object value) {
+            return insert(size(), value);
+        }
+
+        static int grow(int capacity, int required) {
+            return Math.max(required, capacity + (capacity >> 1) + 4);
+        }
+    }
+
+    private static final class EmptyStorage extends Storage {
+        static final EmptyStorage INSTANCE = new EmptyStorage();
+
+        @Override
+        int size() {
+            return 0;
+        }
+
+        @Override
+        Object get(int index) {
+            throw new IndexOutOfBoundsException(index);
+        }
+
+        @Override
+        Storage set(int index, Object value) {
+            throw new IndexOutOfBoundsException(index);
+        }
+
+        @Override
+        Storage insert(int index, Object value) {
+            if (index != 0) throw new IndexOutOfBoundsException(index);
+            if (value instanceof Long number) return new LongStorage(new long[] {number}, 1);
+            if (value instanceof Double number) return new DoubleStorage(new double[] {number}, 1);
+            return new ObjectStorage(new Object[] {value}, 1);
+        }
+
+        @Override
+        Storage remove(int index) {
+            throw new IndexOutOfBoundsException(index);
+        }
+
+        @Override
+        Storage slice(int from, int to) {
+            return this;
+        }
+    }
+
+    private static final class LongStorage extends Storage {
+        private long[] elements;
+        private int size;
+
+        LongStorage(long[] elements, int size) {
+            this.elements = elements;
+            this.size = size;
+        }
+
+        @Override
+        int size() {
+            return size;
+        }
+
+        @Override
+        Object get(int index) {
+            return elements[index];
+        }
+
+        @Override
+        Storage set(int index, Object value) {
+            if (value instanceof Long number) {
+                elements[index] = number;
+                return this;
+            }
+            return generalize(value).set(index, value);
+        }
+
+        @Override
+        Storage insert(int index, Object value) {
+            if (!(value instanceof Long number)) return generalize(value).insert(index, value);
+            if (size == elements.length) elements = Arrays.copyOf(elements, grow(elements.length, size + 1));
+            System.arraycopy(elements, index, elements, index + 1, size - index);
+            elements[index] = number;
+            size++;
+            return this;
+        }
+
+        @Override
+        Storage remove(int index) {
+            System.arraycopy(elements, index + 1, elements, index, size - index - 1);
+            size--;
+            return this;
+        }
+
+        @Override
+        Storage slice(int from, int to) {
+            return new LongStorage(Arrays.copyOfRange(elements, from, to), to - from);
+        }
+
+        private Storage generalize(Object incoming) {
+            if (incoming instanceof Double) {
+                double[] doubles = new double[elements.length];
+                for (int i = 0; i < size; i++) {
+                    if ((long) (double) elements[i] != elements[i]) return toObjects();
+                    doubles[i] = elements[i];
+                }
+                return new DoubleStorage(doubles, size);
+            }
+            return toObjects();
+        }
+
+        private Storage toObjects() {
+            Object[] objects = new Object[elements.length];
+            for (int i = 0; i < size; i++) objects[i] = elements[i];
+            return new ObjectStorage(objects, size);
+        }
+    }
+
+    private static final class DoubleStorage extends Storage { //integers stored here read back as doubles
+        private double[] elements;
+        private int size;
+
+        DoubleStorage(double[] elements, int size) {
+            this.elements = elements;
+            this.size = size;
+        }
+
+        @Override
+        int size() {
+            return size;
+        }
+
+        @Override
+        Object get(int index) {
+            return elements[index];
+        }
+
+        @Override
+        Storage set(int index, Object value) {
+            if (fits(value)) {
+                elements[index] = toDouble(value);
+                return this;
+            }
+            return toObjects().set(index, value);
+        }
+
+        @Override
+        Storage insert(int index, Object value) {
+            if (!fits(value)) return toObjects().insert(index, value);
+            if (size == elements.length) elements = Arrays.copyOf(elements, grow(elements.length, size + 1));
+            System.arraycopy(elements, index, elements, index + 1, size - index);
+            elements[index] = toDouble(value);
+            size++;
+            return this;
+        }
+
+        @Override
+        Storage remove(int index) {
+            System.arraycopy(elements, index + 1, elements, index, size - index - 1);
+            size--;
+            return this;
+        }
+
+        @Override
+        Storage slice(int from, int to) {
+            return new DoubleStorage(Arrays.copyOfRange(elements, from, to), to - from);
+        }
+
+        private static boolean fits(Object value) {
+            if (value instanceof Double) return true;
+            return value instanceof Long number && (long) (double) number == number;
+        }
+
+        private static double toDouble(Object value) {
+            if (value instanceof Long number) return number;
+            return (double) value;
+        }
+
+        private Storage toObjects() {
+            Object[] objects = new Object[elements.length];
+            for (int i = 0; i < size; i++) objects[i] = elements[i];
+            return new ObjectStorage(objects, size);
+        }
+    }
+
+    private static final class ObjectStorage extends Storage {
+        private Object[] elements;
+        private int size;
+
+        ObjectStorage(Object[] elements, int size) {
+            this.elements = elements;
+            this.size = size;
+        }
+
+        @Override
+        int size() {
+            return size;
+        }
+
+        @Override
+        Object get(int index) {
+            return elements[index];
+        }
+
+        @Override
+        Storage set(int index, Object value) {
+            elements[index] = value;
+            return this;
+        }
+
+        @Override
+        Storage insert(int index, Object value) {
+            if (size == elements.length) elements = Arrays.copyOf(elements, grow(elements.length, size + 1));
+            System.arraycopy(elements, index, elements, index + 1, size - index);
+            elements[index] = value;
+            size++;
+            return this;
+        }
+
+        @Override
+        Storage remove(int index) {
+            System.arraycopy(elements, index + 1, elements, index, size - index - 1);
+            elements[--size] = null;
+            return this;
+        }
+
+        @Override
+        Storage slice(int from, int to) {
+            return new ObjectStorage(Arrays.copyOfRange(elements, from, to), to - from);
+        }
+    }
+}
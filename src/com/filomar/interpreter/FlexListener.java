@@ -0,0 +1,9 @@
+package com.filomar.interpreter;
+
+//Callbacks of an instrument, run on the thread executing the program, see FlexInstruments
+public interface FlexListener {
+    default void onEnter(FlexProbe probe) {}
+
+    //value is the returned one when leaving a call or a return statement, null otherwise and on errors
+    default void onExit(FlexProbe probe, Object value) {}
+}
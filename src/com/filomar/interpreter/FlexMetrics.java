@@ -0,0 +1,84 @@
+package com.filomar.interpreter;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+//Live statistics of one context, its workers included, always collected and cheap enough to stay on
+//Registered on demand as com.filomar.flex:type=Context,name=<name>, for JConsole or any JMX exporter
+public final class FlexMetrics implements FlexMetricsMBean {
+    //Fields
+    final LongAdder statements = new LongAdder();
+    final LongAdder calls = new LongAdder();
+    final LongAdder environments = new LongAdder();
+    final LongAdder runtimeErrors = new LongAdder();
+    final LongAdder scanNanos = new LongAdder();
+    final LongAdder parseNanos = new LongAdder();
+    final LongAdder executionNanos = new LongAdder();
+    final LongAdder callDepth = new LongAdder(); //summed over every thread of the context
+
+    private ObjectName registeredName = null;
+
+    //Constructors
+    FlexMetrics() {}
+
+    //Methods
+    //--Registration
+    public synchronized ObjectName register(String name) throws JMException {
+        unregister();
+        ObjectName objectName = new ObjectName("com.filomar.flex:type=Context,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        registeredName = objectName;
+        return objectName;
+    }
+
+    public synchronized void unregister() throws JMException {
+        if (registeredName == null) return;
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        if (server.isRegistered(registeredName)) server.unregisterMBean(registeredName);
+        registeredName = null;
+    }
+
+    //--Attributes
+    @Override
+    public long getStatementsExecuted() {
+        return statements.sum();
+    }
+
+    @Override
+    public long getFunctionCalls() {
+        return calls.sum();
+    }
+
+    @Override
+    public long getEnvironmentAllocations() {
+        return environments.sum();
+    }
+
+    @Override
+    public long getRuntimeErrors() {
+        return runtimeErrors.sum();
+    }
+
+    @Override
+    public long getScanNanos() {
+        return scanNanos.sum();
+    }
+
+    @Override
+    public long getParseNanos() {
+        return parseNanos.sum();
+    }
+
+    @Override
+    public long getExecutionNanos() {
+        return executionNanos.sum();
+    }
+
+    @Override
+    public long getActiveCallDepth() {
+        return callDepth.sum();
+    }
+}
@@ -0,0 +1,13 @@
+package com.filomar.interpreter;
+
+//Management interface of FlexMetrics, attribute names follow the getters
+public interface FlexMetricsMBean {
+    long getStatementsExecuted();
+    long getFunctionCalls();
+    long getEnvironmentAllocations();
+    long getRuntimeErrors();
+    long getScanNanos();
+    long getParseNanos();
+    long getExecutionNanos();
+    long getActiveCallDepth();
+}
@@ -0,0 +1,206 @@
+package com.filomar.interpreter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+public class FlexOutput {
+    //Fields
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(Charset.defaultCharset());
+    private static final double PLAIN_UPPER_BOUND = 1e7; //Double.toString() switches to scientific notation from here on
+    private static final double PLAIN_LOWER_BOUND = 1e-3; //...and below this
+    private static final long MAX_EXACT_DIGITS = 1_000_000_000_000_000L; //15 significant digits always round-trip
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9,
+            1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17
+    };
+    //Lists and dicts being formatted on this thread, a container reached again inside itself prints as [...] or {...}
+    private static final ThreadLocal<Set<Object>> FORMATTING = ThreadLocal.withInitial(() -> Collections.newSetFromMap(new IdentityHashMap<>()));
+
+    private final OutputStream sink;
+    private final Charset charset;
+    private final boolean asciiCompatible;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int count = 0;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    //Constructors
+    FlexOutput(OutputStream sink) {
+        this.sink = sink;
+        this.charset = sink instanceof PrintStream printStream ? printStream.charset() : Charset.defaultCharset();
+        this.asciiCompatible = "\u007f".getBytes(charset).length == 1;
+    }
+
+    //Methods
+    //--Printing
+    void printLine(Object value) {
+        String string = value instanceof String || value instanceof Long || value instanceof Double ? null : stringify(value);
+        lock.lock(); //tasks share their context output, a line is never split between them
+        try {
+            if (value instanceof String text) writeString(text);
+            else if (value instanceof Long number) writeLong(number);
+            else if (value instanceof Double number) writeDouble(number);
+            else writeString(string);
+            writeBytes(LINE_SEPARATOR);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void flush() {
+        lock.lock();
+        try {
+            drain();
+            sink.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //--Value formatting
+    static String stringify(Object value) {
+        if (value == null) return "null";
+        if (value instanceof Double number) return formatDouble(number);
+        return value.toString();
+    }
+
+    static boolean enterContainer(Object container) { //false when container is already being formatted further up
+        return FORMATTING.get().add(container);
+    }
+
+    static void exitContainer(Object container) {
+        FORMATTING.get().remove(container);
+    }
+
+    static String formatDouble(double value) {
+        byte[] digits = new byte[32];
+        int length = formatDouble(value, digits, 0);
+        if (length >= 0) return new String(digits, 0, length, Charset.defaultCharset());
+        return slowFormatDouble(value);
+    }
+
+    private static String slowFormatDouble(double value) { //mirrors the historical formatting, including its quirks for large values
+        String str = Double.toString(value);
+        if (value % 1 == 0) return str.substring(0, str.length() - 2);
+        return str;
+    }
+
+    private static int formatDouble(double value, byte[] out, int pos) { //returns -1 when the value is out of the fast path range
+        double magnitude = Math.abs(value);
+        if (!(magnitude < PLAIN_UPPER_BOUND)) return -1;
+
+        boolean negative = Double.doubleToRawLongBits(value) < 0;
+        if (negative) out[pos++] = '-';
+
+        if (magnitude % 1 == 0) return writeDigits((long) magnitude, out, pos);
+        if (magnitude < PLAIN_LOWER_BOUND) return -1;
+
+        //Smallest number of fractional digits that reads back to the same double is what Double.toString() prints
+        long integral = (long) magnitude;
+        for (int scale = 1; scale < POWERS_OF_TEN.length; scale++) {
+            double power = POWERS_OF_TEN[scale];
+            long scaled = Math.round(magnitude * power);
+            if (scaled >= MAX_EXACT_DIGITS) return -1;
+            if (scaled / power != magnitude) continue;
+
+            pos = writeDigits(integral, out, pos);
+            out[pos++] = '.';
+            long fraction = scaled - integral * (long) power;
+            int fractionStart = pos;
+            pos += scale;
+            for (int i = pos - 1; i >= fractionStart; i--) {
+                out[i] = (byte) ('0' + fraction % 10);
+                fraction /= 10;
+            }
+            return pos;
+        }
+
+        return -1;
+    }
+
+    private static int writeDigits(long value, byte[] out, int pos) {
+        int length = 1;
+        for (long rest = value / 10; rest > 0; rest /= 10) length++;
+        int end = pos + length;
+        for (int i = end - 1; i >= pos; i--) {
+            out[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        return end;
+    }
+
+    //--Buffer management
+    private void writeLong(long value) {
+        if (value == Long.MIN_VALUE) {
+            writeString(Long.toString(value));
+            return;
+        }
+        if (BUFFER_SIZE - count < 20) drain();
+        if (value < 0) {
+            buffer[count++] = '-';
+            value = -value;
+        }
+        count = writeDigits(value, buffer, count);
+    }
+
+    private void writeDouble(double value) {
+        if (BUFFER_SIZE - count < 32) drain();
+        int end = formatDouble(value, buffer, count);
+        if (end >= 0) {
+            count = end;
+        } else {
+            writeString(slowFormatDouble(value));
+        }
+    }
+
+    private void writeString(String string) {
+        if (!asciiCompatible) {
+            writeBytes(string.getBytes(charset));
+            return;
+        }
+
+        int length = string.length();
+        for (int i = 0; i < length; i++) {
+            char c = string.charAt(i);
+            if (c >= 0x80) {
+                writeBytes(string.substring(i).getBytes(charset));
+                return;
+            }
+            if (count == BUFFER_SIZE) drain();
+            buffer[count++] = (byte) c;
+        }
+    }
+
+    private void writeBytes(byte[] bytes) {
+        if (bytes.length > BUFFER_SIZE - count) drain();
+        if (bytes.length > BUFFER_SIZE) {
+            try {
+                sink.write(bytes);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return;
+        }
+        System.arraycopy(bytes, 0, buffer, count, bytes.length);
+        count += bytes.length;
+    }
+
+    private void drain() {
+        if (count == 0) return;
+        try {
+            sink.write(buffer, 0, count);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        count = 0;
+    }
+}
@@ -0,0 +1,132 @@
+package com.filomar.interpreter;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+//Data-parallel list operations on the common ForkJoinPool
+//Every leaf runs its callbacks on a private worker interpreter with its own copy of the captured variables,
+//exactly like a spawned task, so callbacks should not rely on side effects
+final class FlexParallel {
+    //Fields
+    private static final int LEAVES_PER_WORKER = 4; //some slack so uneven callbacks still balance
+
+    //Constructors
+    private FlexParallel() {}
+
+    //Methods
+    //Leaves create their workers from a template made here on the calling thread, which captures its governor and frames
+    static FlexList map(Interpreter interpreter, FlexList list, FlexCallable function) {
+        Object[] results = new Object[list.size()];
+        ForkJoinPool.commonPool().invoke(new MapAction(interpreter.worker(), list, function, results, 0, list.size(), threshold(list)));
+
+        FlexList mapped = new FlexList();
+        for (Object result : results) mapped.add(result);
+        return mapped;
+    }
+
+    static FlexList filter(Interpreter interpreter, FlexList list, FlexCallable predicate) {
+        Object[] results = new Object[list.size()];
+        ForkJoinPool.commonPool().invoke(new MapAction(interpreter.worker(), list, predicate, results, 0, list.size(), threshold(list)));
+
+        FlexList filtered = new FlexList();
+        for (int i = 0; i < results.length; i++) {
+            if (Interpreter.isTruth(results[i])) filtered.add(list.get(i));
+        }
+        return filtered;
+    }
+
+    static Object reduce(Interpreter interpreter, FlexList list, FlexCallable function, Object identity) {
+        return ForkJoinPool.commonPool().invoke(new ReduceTask(interpreter.worker(), list, function, identity, 0, list.size(), threshold(list)));
+    }
+
+    private static int threshold(FlexList list) {
+        int leaves = ForkJoinPool.getCommonPoolParallelism() * LEAVES_PER_WORKER;
+        return Math.max(1, list.size() / leaves);
+    }
+
+    private static FlexCallable isolate(FlexCallable function) {
+        if (function instanceof FlexFunction flexFunction) return flexFunction.snapshot(new IdentityHashMap<>());
+        return function;
+    }
+
+    //--Fork-join tasks
+    private static final class MapAction extends RecursiveAction {
+        private final Interpreter parent;
+        private final FlexList list;
+        private final FlexCallable function;
+        private final Object[] results;
+        private final int from, to, threshold;
+
+        MapAction(Interpreter parent, FlexList list, FlexCallable function, Object[] results, int from, int to, int threshold) {
+            this.parent = parent;
+            this.list = list;
+            this.function = function;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > threshold) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new MapAction(parent, list, function, results, from, middle, threshold),
+                        new MapAction(parent, list, function, results, middle, to, threshold));
+                return;
+            }
+
+            Interpreter worker = parent.worker();
+            FlexCallable callback = isolate(function);
+            for (int i = from; i < to; i++) {
+                results[i] = callback.call(worker, Arrays.asList(list.get(i)));
+            }
+        }
+    }
+
+    private static final class ReduceTask extends RecursiveTask<Object> { //function must be associative and identity neutral
+        private final Interpreter parent;
+        private final FlexList list;
+        private final FlexCallable function;
+        private final Object identity;
+        private final int from, to, threshold;
+
+        ReduceTask(Interpreter parent, FlexList list, FlexCallable function, Object identity, int from, int to, int threshold) {
+            this.parent = parent;
+            this.list = list;
+            this.function = function;
+            this.identity = identity;
+            this.from = from;
+            this.to = to;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected Object compute() {
+            if (to - from > threshold) {
+                int middle = (from + to) >>> 1;
+                ReduceTask left = new ReduceTask(parent, list, function, identity, from, middle, threshold);
+                ReduceTask right = new ReduceTask(parent, list, function, identity, middle, to, threshold);
+                left.fork();
+                Object rightResult = right.compute();
+                Object leftResult = left.join();
+                return combine(leftResult, rightResult);
+            }
+
+            Interpreter worker = parent.worker();
+            FlexCallable callback = isolate(function);
+            Object accumulator = identity;
+            for (int i = from; i < to; i++) {
+                accumulator = callback.call(worker, Arrays.asList(accumulator, list.get(i)));
+            }
+            return accumulator;
+        }
+
+        private Object combine(Object left, Object right) {
+            return isolate(function).call(parent.worker(), Arrays.asList(left, right));
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.filomar.interpreter;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+//Site of a program listeners can be attached to: one statement, or a whole function body for calls
+//While listeners are attached its Stmt.Probe node takes the original's place in the tree, see FlexInstruments
+public final class FlexProbe {
+    //Fields
+    private final String kind; //statement class, e.g. "Print", or "Call"
+    private final int line;
+    private final String function; //enclosing function of a statement or called function, null at the top level
+    private final boolean isCall;
+
+    final Stmt original; //the statement, or the function declaration of a call probe
+    final Stmt.Probe node;
+    final List<FlexListener> listeners = new CopyOnWriteArrayList<>();
+    Runnable restore = null; //puts the original back, set while installed
+
+    //Constructors
+    FlexProbe(Stmt statement, int line, String function) {
+        this.kind = statement.getClass().getSimpleName();
+        this.line = line;
+        this.function = function;
+        this.isCall = false;
+        this.original = statement;
+        this.node = new Stmt.Probe(this, List.of(statement));
+    }
+
+    FlexProbe(Stmt.FunDcl declaration) {
+        this.kind = "Call";
+        this.line = declaration.identifier.line;
+        this.function = declaration.identifier.lexeme;
+        this.isCall = true;
+        this.original = declaration;
+        this.node = new Stmt.Probe(this, declaration.body); //wraps the body, the declaration points at the node once installed
+    }
+
+    //Methods
+    public String kind() {
+        return kind;
+    }
+
+    public int line() { //0 when no token of the statement, nor of the ones before it, carries a line
+        return line;
+    }
+
+    public String function() {
+        return function;
+    }
+
+    public boolean isCall() {
+        return isCall;
+    }
+
+    void enter() {
+        for (FlexListener listener : listeners) listener.onEnter(this);
+    }
+
+    void exit(Object value) {
+        for (FlexListener listener : listeners) listener.onExit(this, value);
+    }
+
+    @Override
+    public String toString() {
+        return kind + " at line " + line + (function != null ? " in " + function : "");
+    }
+}
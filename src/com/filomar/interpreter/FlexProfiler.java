@@ -0,0 +1,220 @@
+package com.filomar.interpreter;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+//Sampling profiler for Flex code
+//Every interpreter of a profiled program keeps a shadow stack of the Flex functions it is running,
+//a timer thread samples the stacks of the threads currently running and counts each distinct stack
+//Results are written in collapsed-stack format, one "frame;frame;frame count" line per stack, ready for flame graphs
+final class FlexProfiler {
+    //Nested classes
+    static final class Stack {
+        private static final String ROOT = "<script>";
+
+        private final FlexProfiler profiler;
+        private Stmt.FunDcl[] frames = new Stmt.FunDcl[32]; //null is the top level of the script
+        private volatile int depth = 0; //publishes the frames below it to the sampler
+        private volatile Thread owner = null;
+
+        private Stack(FlexProfiler profiler) {
+            this.profiler = profiler;
+        }
+
+        Stack fork() { //for a worker interpreter, its frames start empty on its own thread
+            return new Stack(profiler);
+        }
+
+        void push(Stmt.FunDcl function) {
+            int top = depth;
+            if (top == 0) { //only stacks with frames are sampled
+                owner = Thread.currentThread();
+                profiler.stacks.add(this);
+            }
+            if (top == frames.length) frames = Arrays.copyOf(frames, top * 2);
+            frames[top] = function;
+            depth = top + 1;
+        }
+
+        void pop() {
+            int top = depth - 1;
+            depth = top;
+            if (top == 0) {
+                profiler.stacks.remove(this);
+                owner = null;
+            }
+        }
+
+        private String collapse() { //racy by design, a sample may mix two neighbouring states of the stack
+            Stmt.FunDcl[] snapshot = frames;
+            int top = Math.min(depth, snapshot.length);
+            if (top == 0) return null;
+
+            StringBuilder collapsed = new StringBuilder();
+            for (int i = 0; i < top; i++) {
+                if (i > 0) collapsed.append(';');
+                collapsed.append(label(snapshot[i]));
+            }
+            return collapsed.toString();
+        }
+
+        private static String label(Stmt.FunDcl function) {
+            return function == null ? ROOT : function.identifier.lexeme + ":" + function.identifier.line;
+        }
+    }
+
+    //Fields
+    private static final String USAGE = "Usage: jflex --profile [--interval <ms>] [--top <n>] [--collapsed <file>] <script>";
+    private static final int EXIT_USAGE = 64;
+
+    private final Set<Stack> stacks = ConcurrentHashMap.newKeySet();
+    private final Map<String, Long> samples = new HashMap<>(); //owned by the sampler thread until stop() joined it
+    private final long intervalNanos;
+    private volatile boolean running = true;
+    private Thread sampler;
+
+    //Constructors
+    private FlexProfiler(long intervalNanos) {
+        this.intervalNanos = intervalNanos;
+    }
+
+    //Methods
+    //--Sampling
+    static FlexProfiler start(long intervalNanos) {
+        FlexProfiler profiler = new FlexProfiler(intervalNanos);
+        profiler.sampler = Thread.ofPlatform().daemon().name("flex-profiler").start(profiler::sample);
+        return profiler;
+    }
+
+    Stack newStack() {
+        return new Stack(this);
+    }
+
+    Map<String, Long> stop() {
+        running = false;
+        LockSupport.unpark(sampler);
+        try {
+            sampler.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return samples;
+    }
+
+    private void sample() {
+        while (running) {
+            LockSupport.parkNanos(intervalNanos);
+            for (Stack stack : stacks) {
+                Thread owner = stack.owner;
+                if (owner == null || owner.getState() != Thread.State.RUNNABLE) continue; //parked, waiting or gone
+                String collapsed = stack.collapse();
+                if (collapsed != null) samples.merge(collapsed, 1L, Long::sum);
+            }
+        }
+    }
+
+    //--Main
+    static int run(String[] args) throws IOException {
+        Path script = null;
+        Path collapsedPath = null;
+        long intervalMillis = 10;
+        int top = 20;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--interval" -> intervalMillis = Long.parseLong(args[++i]);
+                    case "--top" -> top = Integer.parseInt(args[++i]);
+                    case "--collapsed" -> collapsedPath = Path.of(args[++i]);
+                    default -> {
+                        if (args[i].startsWith("--") || script != null) throw new IllegalArgumentException(args[i]);
+                        script = Path.of(args[i]);
+                    }
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+            script = null;
+        }
+        if (script == null || intervalMillis < 1 || top < 1) {
+            System.out.println(USAGE);
+            return EXIT_USAGE;
+        }
+        if (collapsedPath == null) collapsedPath = Path.of(script.getFileName() + ".collapsed");
+
+        String source = Files.readString(script, Charset.defaultCharset());
+        FlexContext context = new FlexContext();
+        FlexProfiler profiler = start(TimeUnit.MILLISECONDS.toNanos(intervalMillis));
+        Stack root = profiler.newStack();
+        context.interpreter.frames = root;
+
+        int[] status = new int[1];
+        Thread program = Thread.ofVirtual().name("flex-main").start(() -> { //the root frame must belong to the thread running the script
+            root.push(null);
+            try {
+                status[0] = context.run(source);
+            } finally {
+                root.pop();
+            }
+        });
+        try {
+            program.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        Map<String, Long> samples = profiler.stop();
+
+        writeCollapsed(samples, collapsedPath);
+        report(samples, top, intervalMillis, collapsedPath, System.err);
+        return status[0];
+    }
+
+    private static void writeCollapsed(Map<String, Long> samples, Path path) throws IOException {
+        List<String> lines = new ArrayList<>(samples.size());
+        for (Map.Entry<String, Long> sample : samples.entrySet()) lines.add(sample.getKey() + " " + sample.getValue());
+        lines.sort(null);
+        Files.write(path, lines, Charset.defaultCharset());
+    }
+
+    //--Reporting
+    //Self counts the samples where a function was running its own code, total those where it was anywhere on the stack
+    private static void report(Map<String, Long> samples, int top, long intervalMillis, Path collapsedPath, PrintStream out) {
+        Map<String, long[]> functions = new HashMap<>(); //{self, total}
+        long count = 0;
+        for (Map.Entry<String, Long> sample : samples.entrySet()) {
+            String[] frames = sample.getKey().split(";");
+            long hits = sample.getValue();
+            count += hits;
+            functions.computeIfAbsent(frames[frames.length - 1], name -> new long[2])[0] += hits;
+            Set<String> seen = new HashSet<>(); //recursive frames count once per sample
+            for (String frame : frames) {
+                if (seen.add(frame)) functions.computeIfAbsent(frame, name -> new long[2])[1] += hits;
+            }
+        }
+
+        out.printf("%nProfile: %d samples every %d ms, collapsed stacks in %s%n", count, intervalMillis, collapsedPath);
+        if (count == 0) return;
+
+        List<Map.Entry<String, long[]>> ranked = new ArrayList<>(functions.entrySet());
+        ranked.sort((a, b) -> a.getValue()[0] != b.getValue()[0]
+                ? Long.compare(b.getValue()[0], a.getValue()[0])
+                : Long.compare(b.getValue()[1], a.getValue()[1]));
+        out.printf("%8s %8s %8s %8s  %s%n", "SELF%", "SELF", "TOTAL%", "TOTAL", "FUNCTION");
+        for (Map.Entry<String, long[]> function : ranked.subList(0, Math.min(top, ranked.size()))) {
+            long self = function.getValue()[0];
+            long total = function.getValue()[1];
+            out.printf("%7.2f%% %8d %7.2f%% %8d  %s%n", 100.0 * self / count, self, 100.0 * total / count, total, function.getKey());
+        }
+    }
+}
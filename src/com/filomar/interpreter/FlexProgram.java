@@ -0,0 +1,46 @@
+package com.filomar.interpreter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+//Scanned and parsed source, immutable once compiled but for instrument probes, and safe to execute from several contexts at once
+public final class FlexProgram {
+    //Fields
+    final List<Stmt> statements; //only changed by instruments swapping probes in and out
+    private final List<String> errors;
+
+    //Constructors
+    private FlexProgram(List<Stmt> statements, List<String> errors) {
+        this.statements = statements;
+        this.errors = Collections.unmodifiableList(errors);
+    }
+
+    //Methods
+    public static FlexProgram compile(String source) {
+        return compile(source, null);
+    }
+
+    static FlexProgram compile(String source, FlexMetrics metrics) { //scan and parse times are added to the metrics, if any
+        List<String> errors = new ArrayList<>();
+        ErrorReporter reporter = (line, column, message) -> errors.add(FlexContext.formatError(line, column, message));
+
+        long start = System.nanoTime();
+        List<Token> tokens = new Scanner(source, reporter).scanTokens();
+        long scanned = System.nanoTime();
+        List<Stmt> statements = new Parser(tokens, reporter).parse();
+        if (metrics != null) {
+            metrics.scanNanos.add(scanned - start);
+            metrics.parseNanos.add(System.nanoTime() - scanned);
+        }
+        return new FlexProgram(statements, errors);
+    }
+
+    public boolean hasErrors() {
+        return !errors.isEmpty();
+    }
+
+    public List<String> errors() {
+        return errors;
+    }
+}
@@ -0,0 +1,62 @@
+package com.filomar.interpreter;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+//Callable running on its own virtual thread with its own interpreter
+//The variables it captured are copied when spawned, globals stay shared, mutable values should travel through channels
+public class FlexTask {
+    //Fields
+    private final String name;
+    private final CompletableFuture<Object> result = new CompletableFuture<>();
+
+    //Constructors
+    private FlexTask(String name) {
+        this.name = name;
+    }
+
+    //Methods
+    static FlexTask spawn(Interpreter parent, FlexCallable callable, List<Object> arguments) {
+        FlexCallable isolated = callable;
+        if (callable instanceof FlexFunction function) {
+            isolated = function.snapshot(new IdentityHashMap<>());
+        }
+
+        FlexTask task = new FlexTask(callable.toString());
+        FlexCallable body = isolated;
+        Interpreter worker = parent.worker(); //on the spawning thread, the parent keeps running and changing its state
+        FlexGovernor governor = worker.governor; //a budgeted run tracks its tasks and cancels them when it ends
+        Thread thread = Thread.ofVirtual().name("flex-task").unstarted(() -> {
+            try {
+                task.result.complete(body.call(worker, arguments));
+            } catch (Throwable error) {
+                task.result.completeExceptionally(error);
+            } finally {
+                if (governor != null) governor.endTask(Thread.currentThread());
+            }
+        });
+        if (governor != null) governor.startTask(thread);
+        thread.start();
+        return task;
+    }
+
+    Object join() {
+        try {
+            return result.join();
+        } catch (CompletionException error) {
+            if (error.getCause() instanceof RuntimeError runtimeError) throw runtimeError;
+            throw new NativeFunction.NativeError("Task " + name + " failed: " + error.getCause());
+        }
+    }
+
+    boolean isDone() {
+        return result.isDone();
+    }
+
+    @Override
+    public String toString() {
+        return "<task " + name + ">";
+    }
+}
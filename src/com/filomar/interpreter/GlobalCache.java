@@ -0,0 +1,53 @@
+package com.filomar.interpreter;
+
+//Inline cache of a Variable or Assign site the parser proved can only resolve to a global
+//Keeps the cell found last time, valid while the globals table is the same one and its version has not moved
+//Entries are immutable and swapped as a whole like in PropertyCache, programs shared by several contexts just re-resolve
+final class GlobalCache {
+    //Nested classes
+    private static final class Entry {
+        final Environment globals;
+        final int version;
+        final GlobalCell cell;
+
+        Entry(Environment globals, int version, GlobalCell cell) {
+            this.globals = globals;
+            this.version = version;
+            this.cell = cell;
+        }
+    }
+
+    //Fields
+    private boolean global; //no local scope around the site declares its name, set by the parser once the scopes are closed
+    private Entry entry;
+
+    //Constructors
+    GlobalCache() {
+        this(false);
+    }
+
+    GlobalCache(boolean global) {
+        this.global = global;
+    }
+
+    //Methods
+    boolean isGlobal() {
+        return global;
+    }
+
+    void markGlobal() {
+        global = true;
+    }
+
+    GlobalCell cell(Environment globals, String name) { //null for local sites and undefined globals, the caller then takes the slow path
+        if (!global) return null;
+
+        Entry cached = entry;
+        if (cached != null && cached.globals == globals && cached.version == globals.version()) return cached.cell;
+
+        int version = globals.version(); //read before the cell, a redefinition racing with us leaves a stale version behind
+        GlobalCell cell = globals.cell(name);
+        if (cell != null) entry = new Entry(globals, version, cell);
+        return cell;
+    }
+}
@@ -0,0 +1,13 @@
+package com.filomar.interpreter;
+
+//Home of one global binding, held by the globals table and by every GlobalCache resolved to it
+//Assignments write the cell in place, a redefinition puts a new cell in the table and bumps its version
+final class GlobalCell {
+    //Fields
+    volatile Object value; //tasks share their context globals
+
+    //Constructors
+    GlobalCell(Object value) {
+        this.value = value;
+    }
+}
@@ -0,0 +1,210 @@
+package com.filomar.interpreter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.filomar.interpreter.ImageWriter.*;
+
+//Rebuilds the globals saved by ImageWriter from a single in-memory read, see there for the layout
+final class ImageReader {
+    //Fields
+    private static final TokenType[] TOKEN_TYPES = TokenType.values();
+
+    private final byte[] image;
+    private int position = 0;
+
+    private Object[] objects;
+    private final List<String> strings = new ArrayList<>();
+    private final List<Stmt.FunDcl> declarations = new ArrayList<>();
+    private final Map<FlexClass, Map<String, FlexFunction>> methods = new HashMap<>();
+
+    //Constructors
+    private ImageReader(byte[] image) {
+        this.image = image;
+    }
+
+    //Methods
+    static Environment restore(InputStream in) throws IOException {
+        ImageReader reader = new ImageReader(in.readAllBytes());
+        try {
+            return reader.readImage();
+        } catch (IndexOutOfBoundsException | ClassCastException | NullPointerException e) {
+            throw new IOException("Corrupt Flex image", e);
+        }
+    }
+
+    //--Sections
+    private Environment readImage() throws IOException {
+        if (readFixedInt() != MAGIC) throw new IOException("Not a Flex image");
+        if (readFixedInt() != VERSION) throw new IOException("Unsupported Flex image version");
+
+        objects = new Object[readVarInt()];
+        for (int i = 0; i < objects.length; i++) objects[i] = readAllocation();
+        for (Object object : objects) readContents(object);
+        return (Environment) objects[0];
+    }
+
+    private Object readAllocation() throws IOException {
+        int kind = readVarInt();
+        switch (kind) {
+            case KIND_GLOBALS:
+                return new Environment();
+            case KIND_SCOPE:
+                return new Environment((Environment) objects[readVarInt()]);
+            case KIND_FUNCTION: {
+                Stmt.FunDcl declaration = (Stmt.FunDcl) readStmt();
+                Environment closure = (Environment) objects[readVarInt()];
+                return new FlexFunction(declaration, closure, readBoolean());
+            }
+            case KIND_CLASS: {
+                String name = readString();
+                int superclass = readVarInt();
+                Map<String, FlexFunction> classMethods = new HashMap<>();
+                FlexClass flexClass = new FlexClass(name, superclass == 0 ? null : (FlexClass) objects[superclass - 1], classMethods);
+                methods.put(flexClass, classMethods);
+                return flexClass;
+            }
+            case KIND_INSTANCE:
+                return new FlexInstance((FlexClass) objects[readVarInt()]);
+            case KIND_LIST:
+                return new FlexList();
+            case KIND_DICT:
+                return new FlexDict();
+            default:
+                throw new IOException("Unknown object kind " + kind);
+        }
+    }
+
+    private void readContents(Object object) throws IOException { //instanceof chain, a pattern switch costs a bootstrap at startup
+        if (object instanceof Environment environment) {
+            for (int i = readVarInt(); i > 0; i--) environment.createBinding(readString(), readValue());
+        } else if (object instanceof FlexClass flexClass) {
+            Map<String, FlexFunction> classMethods = methods.get(flexClass);
+            for (int i = readVarInt(); i > 0; i--) classMethods.put(readString(), (FlexFunction) objects[readVarInt()]);
+        } else if (object instanceof FlexInstance instance) {
+            for (int i = readVarInt(); i > 0; i--) {
+                Shape next = instance.shape.withField(readString());
+                instance.grow(next);
+                instance.slots[next.slotCount() - 1] = readValue();
+            }
+        } else if (object instanceof FlexList list) {
+            for (int i = readVarInt(); i > 0; i--) list.add(readValue());
+        } else if (object instanceof FlexDict dict) {
+            for (int i = readVarInt(); i > 0; i--) dict.put(readValue(), readValue());
+        }
+    }
+
+    //--Values
+    private Object readValue() throws IOException {
+        int tag = readVarInt();
+        return switch (tag) {
+            case VALUE_NULL -> null;
+            case VALUE_FALSE -> false;
+            case VALUE_TRUE -> true;
+            case VALUE_INTEGER -> readFixedLong();
+            case VALUE_NUMBER -> Double.longBitsToDouble(readFixedLong());
+            case VALUE_STRING -> readString();
+            case VALUE_OBJECT -> objects[readVarInt()];
+            case VALUE_NATIVE -> {
+                String name = readString();
+                NativeFunction builtin = Natives.builtin(name);
+                if (builtin == null) throw new IOException("Unknown native function " + name);
+                yield builtin;
+            }
+            default -> throw new IOException("Unknown value tag " + tag);
+        };
+    }
+
+    //--Trees, called back by AstCodec
+    Expr readExpr() throws IOException {
+        int tag = readVarInt();
+        return tag == TAG_NULL ? null : AstCodec.readExpr(this, tag);
+    }
+
+    Stmt readStmt() throws IOException {
+        int tag = readVarInt();
+        if (tag == TAG_NULL) return null;
+        if (tag == TAG_DECLARATION_REFERENCE) return declarations.get(readVarInt());
+
+        Stmt stmt = AstCodec.readStmt(this, tag);
+        if (stmt instanceof Stmt.FunDcl function) declarations.add(function);
+        return stmt;
+    }
+
+    List<Expr> readExprs() throws IOException {
+        int size = readVarInt();
+        List<Expr> exprs = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) exprs.add(readExpr());
+        return exprs;
+    }
+
+    <T extends Stmt> List<T> readStmts(Class<T> type) throws IOException {
+        int size = readVarInt();
+        List<T> stmts = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) stmts.add(type.cast(readStmt()));
+        return stmts;
+    }
+
+    Token readToken() throws IOException {
+        int type = readVarInt();
+        if (type == 0) return null;
+        return new Token(TOKEN_TYPES[type - 1], readString(), readLiteral(), readVarInt(), readVarInt());
+    }
+
+    List<Token> readTokens() throws IOException {
+        int size = readVarInt();
+        List<Token> tokens = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) tokens.add(readToken());
+        return tokens;
+    }
+
+    Object readLiteral() throws IOException {
+        return readValue();
+    }
+
+    GlobalCache readGlobalCache() {
+        return new GlobalCache(readBoolean());
+    }
+
+    boolean readBoolean() {
+        return readVarInt() != 0;
+    }
+
+    //--Decoding
+    private String readString() {
+        int index = readVarInt();
+        if (index > 0) return strings.get(index - 1);
+
+        int length = readVarInt();
+        String string = new String(image, position, length, StandardCharsets.UTF_8).intern(); //the scanner interns lexemes too
+        position += length;
+        strings.add(string);
+        return string;
+    }
+
+    private int readVarInt() {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = image[position++];
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+    }
+
+    private int readFixedInt() {
+        int value = 0;
+        for (int i = 0; i < 4; i++) value = (value << 8) | (image[position++] & 0xFF);
+        return value;
+    }
+
+    private long readFixedLong() {
+        long value = 0;
+        for (int i = 0; i < 8; i++) value = (value << 8) | (image[position++] & 0xFF);
+        return value;
+    }
+}
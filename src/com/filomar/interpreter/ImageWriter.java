@@ -0,0 +1,347 @@
+package com.filomar.interpreter;
+
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+//Saves a globals environment and everything reachable from it as a compact image
+//Layout: header, object table allocations, object contents, each object referenced by its index in the table
+//Allocations only depend on earlier entries (parent scopes, closures, superclasses, classes of instances),
+//every cycle goes through contents, so the reader can build the whole graph in two linear passes
+final class ImageWriter {
+    //Fields
+    static final int MAGIC = 0x464C5849; //"FLXI"
+    static final int VERSION = 5; //bump whenever token types or tree nodes change
+
+    //Node tags, AstCodec numbers the tree nodes from 2 onwards
+    static final int TAG_NULL = 0;
+    static final int TAG_DECLARATION_REFERENCE = 1; //function declaration already written, shared by several closures
+
+    static final int VALUE_NULL = 0;
+    static final int VALUE_FALSE = 1;
+    static final int VALUE_TRUE = 2;
+    static final int VALUE_INTEGER = 3;
+    static final int VALUE_NUMBER = 4;
+    static final int VALUE_STRING = 5;
+    static final int VALUE_OBJECT = 6;
+    static final int VALUE_NATIVE = 7; //built-ins are saved by name and re-bound when the image is read
+
+    static final int KIND_GLOBALS = 0;
+    static final int KIND_SCOPE = 1;
+    static final int KIND_FUNCTION = 2;
+    static final int KIND_CLASS = 3;
+    static final int KIND_INSTANCE = 4;
+    static final int KIND_LIST = 5;
+    static final int KIND_DICT = 6;
+
+    private byte[] buffer = new byte[1 << 14];
+    private int count = 0;
+
+    private final List<Object> objects = new ArrayList<>();
+    private final Map<Object, Integer> objectIds = new IdentityHashMap<>();
+    private final ArrayDeque<Object> unscanned = new ArrayDeque<>();
+    private final Map<String, Integer> strings = new HashMap<>();
+    private final Map<Stmt.FunDcl, Integer> declarations = new IdentityHashMap<>();
+
+    //Constructors
+    private ImageWriter() {}
+
+    //Methods
+    static void save(Environment globals, OutputStream out) throws IOException {
+        ImageWriter writer = new ImageWriter();
+        writer.collect(globals);
+        writer.writeImage();
+        out.write(writer.buffer, 0, writer.count);
+    }
+
+    //--Object table
+    private void collect(Environment globals) throws IOException {
+        register(globals);
+        while (!unscanned.isEmpty()) {
+            switch (unscanned.poll()) {
+                case Environment environment -> {
+                    for (Object value : environment.localBindings().values()) reach(value);
+                }
+                case FlexClass flexClass -> {
+                    for (FlexFunction method : flexClass.declaredMethods().values()) register(method);
+                }
+                case FlexInstance instance -> {
+                    for (int i = 0; i < instance.shape.slotCount(); i++) reach(instance.slots[i]);
+                }
+                case FlexList list -> {
+                    for (int i = 0; i < list.size(); i++) reach(list.get(i));
+                }
+                case FlexDict dict -> {
+                    FlexList keys = dict.keys();
+                    FlexList values = dict.values();
+                    for (int i = 0; i < keys.size(); i++) {
+                        reach(keys.get(i));
+                        reach(values.get(i));
+                    }
+                }
+                default -> {} //functions have no contents, their closure is part of the allocation
+            }
+        }
+    }
+
+    private void reach(Object value) throws IOException {
+        if (value == null || value instanceof Boolean || value instanceof Long || value instanceof Double || value instanceof String) return;
+        if (value instanceof NativeFunction function) {
+            if (!function.isBuiltin()) throw new NotSerializableException("host function " + function.name());
+            return;
+        }
+        if (value instanceof FlexFunction || value instanceof FlexClass || value instanceof FlexInstance
+                || value instanceof FlexList || value instanceof FlexDict) {
+            register(value);
+            return;
+        }
+        throw new NotSerializableException(value.getClass().getSimpleName() + " values cannot be saved in an image");
+    }
+
+    private void register(Object object) throws IOException {
+        if (objectIds.containsKey(object)) return;
+
+        switch (object) { //allocation dependencies go first
+            case Environment environment -> {
+                if (environment.isView()) throw new NotSerializableException("forked contexts cannot be saved");
+                if (environment.enclosing() != null) register(environment.enclosing());
+            }
+            case FlexFunction function -> register(function.closure());
+            case FlexClass flexClass -> {
+                if (flexClass.superclass != null) register(flexClass.superclass);
+            }
+            case FlexInstance instance -> register(instance.shape.owner);
+            default -> {}
+        }
+
+        objectIds.put(object, objects.size());
+        objects.add(object);
+        unscanned.add(object);
+    }
+
+    //--Sections
+    private void writeImage() throws IOException {
+        writeFixedInt(MAGIC);
+        writeFixedInt(VERSION);
+
+        writeVarInt(objects.size());
+        for (Object object : objects) writeAllocation(object);
+        for (Object object : objects) writeContents(object);
+    }
+
+    private void writeAllocation(Object object) throws IOException {
+        switch (object) {
+            case Environment environment -> {
+                if (environment.enclosing() == null) {
+                    writeVarInt(KIND_GLOBALS);
+                } else {
+                    writeVarInt(KIND_SCOPE);
+                    writeVarInt(objectIds.get(environment.enclosing()));
+                }
+            }
+            case FlexFunction function -> {
+                writeVarInt(KIND_FUNCTION);
+                writeStmt(function.declaration());
+                writeVarInt(objectIds.get(function.closure()));
+                writeBoolean(function.isInitializer());
+            }
+            case FlexClass flexClass -> {
+                writeVarInt(KIND_CLASS);
+                writeString(flexClass.name);
+                writeVarInt(flexClass.superclass == null ? 0 : objectIds.get(flexClass.superclass) + 1);
+            }
+            case FlexInstance instance -> {
+                writeVarInt(KIND_INSTANCE);
+                writeVarInt(objectIds.get(instance.shape.owner));
+            }
+            case FlexList ignored -> writeVarInt(KIND_LIST);
+            case FlexDict ignored -> writeVarInt(KIND_DICT);
+            default -> throw new IllegalStateException("Unexpected object " + object);
+        }
+    }
+
+    private void writeContents(Object object) throws IOException {
+        switch (object) {
+            case Environment environment -> {
+                Map<String, Object> bindings = environment.localBindings();
+                writeVarInt(bindings.size());
+                for (Map.Entry<String, Object> binding : bindings.entrySet()) {
+                    writeString(binding.getKey());
+                    writeValue(binding.getValue());
+                }
+            }
+            case FlexClass flexClass -> {
+                Map<String, FlexFunction> methods = flexClass.declaredMethods();
+                writeVarInt(methods.size());
+                for (Map.Entry<String, FlexFunction> method : methods.entrySet()) {
+                    writeString(method.getKey());
+                    writeVarInt(objectIds.get(method.getValue()));
+                }
+            }
+            case FlexInstance instance -> { //fields in slot order, replaying them rebuilds the same shape transitions
+                writeVarInt(instance.shape.slotCount());
+                for (int i = 0; i < instance.shape.slotCount(); i++) {
+                    writeString(instance.shape.fieldAt(i));
+                    writeValue(instance.slots[i]);
+                }
+            }
+            case FlexList list -> {
+                writeVarInt(list.size());
+                for (int i = 0; i < list.size(); i++) writeValue(list.get(i));
+            }
+            case FlexDict dict -> {
+                FlexList keys = dict.keys();
+                FlexList values = dict.values();
+                writeVarInt(keys.size());
+                for (int i = 0; i < keys.size(); i++) {
+                    writeValue(keys.get(i));
+                    writeValue(values.get(i));
+                }
+            }
+            default -> {}
+        }
+    }
+
+    //--Values
+    private void writeValue(Object value) {
+        switch (value) {
+            case null -> writeVarInt(VALUE_NULL);
+            case Boolean bool -> writeVarInt(bool ? VALUE_TRUE : VALUE_FALSE);
+            case Long number -> {
+                writeVarInt(VALUE_INTEGER);
+                writeFixedLong(number);
+            }
+            case Double number -> {
+                writeVarInt(VALUE_NUMBER);
+                writeFixedLong(Double.doubleToRawLongBits(number));
+            }
+            case String string -> {
+                writeVarInt(VALUE_STRING);
+                writeString(string);
+            }
+            case NativeFunction function -> {
+                writeVarInt(VALUE_NATIVE);
+                writeString(function.name());
+            }
+            default -> {
+                writeVarInt(VALUE_OBJECT);
+                writeVarInt(objectIds.get(value));
+            }
+        }
+    }
+
+    //--Trees, called back by AstCodec
+    void writeTag(int tag) {
+        writeVarInt(tag);
+    }
+
+    void writeExpr(Expr expr) throws IOException {
+        if (expr == null) writeTag(TAG_NULL);
+        else AstCodec.writeExpr(this, expr);
+    }
+
+    void writeStmt(Stmt stmt) throws IOException {
+        if (stmt == null) {
+            writeTag(TAG_NULL);
+            return;
+        }
+        if (stmt instanceof Stmt.Probe probe) stmt = probe.probe.original; //instruments are not part of the program
+
+        Integer declaration = stmt instanceof Stmt.FunDcl ? declarations.get(stmt) : null;
+        if (declaration != null) {
+            writeTag(TAG_DECLARATION_REFERENCE);
+            writeVarInt(declaration);
+            return;
+        }
+
+        AstCodec.writeStmt(this, stmt);
+        if (stmt instanceof Stmt.FunDcl function) declarations.put(function, declarations.size()); //numbered once complete, like the reader does
+    }
+
+    void writeExprs(List<Expr> exprs) throws IOException {
+        writeVarInt(exprs.size());
+        for (Expr expr : exprs) writeExpr(expr);
+    }
+
+    void writeStmts(List<? extends Stmt> stmts) throws IOException {
+        if (stmts.size() == 1 && stmts.get(0) instanceof Stmt.Probe probe && probe.probe.isCall()) stmts = probe.statements; //function body moved by a call probe
+        writeVarInt(stmts.size());
+        for (Stmt stmt : stmts) writeStmt(stmt);
+    }
+
+    void writeToken(Token token) {
+        if (token == null) {
+            writeVarInt(0);
+            return;
+        }
+        writeVarInt(token.type.ordinal() + 1);
+        writeString(token.lexeme);
+        writeLiteral(token.literal);
+        writeVarInt(token.line);
+        writeVarInt(token.column);
+    }
+
+    void writeTokens(List<Token> tokens) {
+        writeVarInt(tokens.size());
+        for (Token token : tokens) writeToken(token);
+    }
+
+    void writeLiteral(Object value) { //source literals are never objects
+        writeValue(value);
+    }
+
+    void writeGlobalCache(GlobalCache cache) {
+        writeBoolean(cache.isGlobal());
+    }
+
+    void writeBoolean(boolean value) {
+        writeVarInt(value ? 1 : 0);
+    }
+
+    //--Encoding
+    private void writeString(String string) { //each distinct string is written once, then referenced by index + 1
+        Integer index = strings.get(string);
+        if (index != null) {
+            writeVarInt(index + 1);
+            return;
+        }
+        strings.put(string, strings.size());
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(0);
+        writeVarInt(bytes.length);
+        ensure(bytes.length);
+        System.arraycopy(bytes, 0, buffer, count, bytes.length);
+        count += bytes.length;
+    }
+
+    private void writeVarInt(int value) { //unsigned LEB128
+        ensure(5);
+        while ((value & ~0x7F) != 0) {
+            buffer[count++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[count++] = (byte) value;
+    }
+
+    private void writeFixedInt(int value) {
+        ensure(4);
+        for (int shift = 24; shift >= 0; shift -= 8) buffer[count++] = (byte) (value >>> shift);
+    }
+
+    private void writeFixedLong(long value) {
+        ensure(8);
+        for (int shift = 56; shift >= 0; shift -= 8) buffer[count++] = (byte) (value >>> shift);
+    }
+
+    private void ensure(int bytes) {
+        if (buffer.length - count < bytes) buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, count + bytes));
+    }
+}
@@ -1,12 +1,14 @@
 package com.filomar.interpreter;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
     //Nested classes
     private static class BreakEx extends RuntimeException {}
-    private static class ReturnEx extends RuntimeException {
+    static class ReturnEx extends RuntimeException {
         final Object value;
 
         ReturnEx(Object value) {
@@ -19,38 +21,75 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
     }
 
     //Fields
-    final Environment globals = new Environment();
-    protected Environment environment = globals;
+    private static final int SCOPE_POOL_SIZE = 32;
+
+    final FlexContext context;
+    final Environment globals;
+    Environment home; //globals of the running function, its global sites resolve against them, see FlexFunction.call()
+    final FlexOutput output;
+    final FlexMetrics metrics;
+    protected Environment environment;
+    FlexGenerator.Handoff yieldTarget = null; //set on the worker running a generator body
+    FlexProfiler.Stack frames = null; //shadow stack of Flex functions, only while profiling
+    FlexGovernor governor = null; //set for the duration of a run with a budget
+    long executed = 0; //statements and allocations since the last governor check
+    long allocated = 0;
+    int callDepth = 0; //only tracked under a governor
+    private Environment[] scopePool = null; //released scopes the parser proved cannot be captured, allocated on first use
+    private int pooledScopes = 0;
 
     //Constructors
-    Interpreter() {
-        globals.createBinding("clock", new FlexCallable() {
-            @Override
-            public int arity() {
-                return 0;
-            }
+    Interpreter(FlexContext context) {
+        this(context, new Environment());
+        Natives.define(globals);
+    }
 
-            @Override
-            public Object call(Interpreter interpreter, List<Object> arguments) {
-                return (double) System.currentTimeMillis();
-            }
+    Interpreter(FlexContext context, Environment globals) {
+        this.context = context;
+        this.output = context.output;
+        this.metrics = context.metrics;
+        this.globals = globals;
+        this.home = globals;
+        this.environment = globals;
+    }
 
-            @Override
-            public String toString() {
-                return "<native clock fun>";
-            }
-        });
+    Interpreter(Interpreter parent) { //worker for another thread, shares context, globals and output
+        this.context = parent.context;
+        this.output = parent.output;
+        this.metrics = parent.metrics;
+        this.globals = parent.globals;
+        this.home = parent.home;
+        this.environment = globals;
+        this.frames = parent.frames != null ? parent.frames.fork() : null;
+        this.governor = parent.governor;
     }
 
     //Methods
     //--Statements executions
     void interpret(List<Stmt> statements) {
-        try {
-            for (Stmt statement : statements) {
-                execute(statement);
+        FlexEvents.Interpret event = new FlexEvents.Interpret();
+        event.begin();
+        boolean completed = true;
+        for (Stmt statement : statements) {
+            if (!interpret(statement)) {
+                completed = false;
+                break;
             }
+        }
+        if (event.shouldCommit()) {
+            event.statements = statements.size();
+            event.completed = completed;
+            event.commit();
+        }
+    }
+
+    boolean interpret(Stmt statement) { //false when a runtime error reached the top level, the program stops there
+        try {
+            execute(statement);
+            return true;
         } catch (RuntimeError error) {
-            Flex.onRuntimeError(error);
+            context.onRuntimeError(error);
+            return false;
         }
     }
 
@@ -61,21 +100,90 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
             for (Stmt stmt : statements) {
                 execute(stmt);
             }
+        } catch (ResourceError error) {
+            throw error; //stops the program instead
         } catch (RuntimeError error) {
-            Flex.onRuntimeError(error);
+            context.onRuntimeError(error);
         } finally {
             this.environment = previous;
         }
     }
 
+    void govern(FlexBudget budget) { //starts a run under the budget, null ends it
+        if (governor != null) governor.finish(); //tasks of the previous run do not outlive it
+        governor = budget != null ? new FlexGovernor(budget) : null;
+        executed = 0;
+        allocated = 0;
+        callDepth = 0;
+    }
+
+    //Scopes of blocks, calls and loops without functions or classes declared inside cannot outlive their execution
+    Environment acquireScope(Environment enclosing) {
+        if (pooledScopes == 0) {
+            metrics.environments.increment();
+            return new Environment(enclosing);
+        }
+        Environment scope = scopePool[--pooledScopes];
+        scopePool[pooledScopes] = null;
+        scope.reset(enclosing);
+        return scope;
+    }
+
+    void releaseScope(Environment scope) {
+        if (scopePool == null) scopePool = new Environment[SCOPE_POOL_SIZE];
+        if (pooledScopes == SCOPE_POOL_SIZE) return;
+        scope.reset(null); //values and enclosing scopes are not kept alive by the pool
+        scopePool[pooledScopes++] = scope;
+    }
+
+    Interpreter worker() { //interpreter for code of this program running on another thread
+        return new Interpreter(this);
+    }
+
+    void onIteration(Stmt loop) {} //called on every loop iteration, only overridden by CountingInterpreter
+
     private void execute(Stmt stmt) {
+        metrics.statements.increment();
+        executed++;
         stmt.accept(this);
     }
 
     //--Visitor pattern declarations interpretation
+    @Override
+    public Void visitClassDclStmt(Stmt.ClassDcl stmt) {
+        FlexClass superclass = null;
+        if (stmt.superclass != null) {
+            Object value = evaluate(stmt.superclass);
+            if (!(value instanceof FlexClass)) {
+                throw new RuntimeError(stmt.superclass.identifier, "Superclass must be a class");
+            }
+            superclass = (FlexClass) value;
+        }
+
+        environment.createBinding(stmt.identifier.lexeme, null);
+
+        Environment methodsEnvironment = environment;
+        if (superclass != null) {
+            methodsEnvironment = new Environment(environment);
+            metrics.environments.increment();
+            allocated++;
+            methodsEnvironment.createBinding("super", superclass);
+        }
+
+        Map<String, FlexFunction> methods = new HashMap<>();
+        for (Stmt.FunDcl method : stmt.methods) {
+            boolean isInitializer = method.identifier.lexeme.equals("init");
+            methods.put(method.identifier.lexeme, new FlexFunction(method, methodsEnvironment, isInitializer));
+        }
+
+        environment.setBinding(stmt.identifier, new FlexClass(stmt.identifier.lexeme, superclass, methods));
+        return null;
+    }
+
     @Override
     public Void visitFunDclStmt(Stmt.FunDcl stmt) {
         FlexFunction function = new FlexFunction(stmt, environment);
+        allocated++;
         environment.createBinding(stmt.identifier.lexeme, function);
         return null;
     }
@@ -89,7 +197,19 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
     //--Visitor pattern statements interpretation
     @Override
     public Void visitBlockStmt(Stmt.Block block) {
-        executeBlock(block.statements, new Environment(this.environment));
+        allocated++;
+        if (block.scopeEscapes) {
+            metrics.environments.increment();
+            executeBlock(block.statements, new Environment(this.environment));
+            return null;
+        }
+
+        Environment scope = acquireScope(this.environment);
+        try {
+            executeBlock(block.statements, scope);
+        } finally {
+            releaseScope(scope);
+        }
         return null;
     }
 
@@ -109,7 +229,7 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
     @Override
     public Void visitPrintStmt(Stmt.Print stmt) {
-        System.out.println(stringify(evaluate(stmt.value)));
+        output.printLine(evaluate(stmt.value));
         return null;
     }
 
@@ -122,6 +242,8 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
     @Override
     public Void visitWhileStmt(Stmt.While stmt) {
         while (isTruth(evaluate(stmt.condition))) {
+            onIteration(stmt);
+            if (governor != null) governor.check(this, stmt.keyword);
             try {
                 execute(stmt.body);
             } catch (BreakEx ex) {
@@ -131,12 +253,69 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         return null;
     }
 
+    @Override
+    public Void visitForInStmt(Stmt.ForIn stmt) {
+        FlexIterator iterator = iterate(stmt.identifier, evaluate(stmt.iterable));
+        Environment previous = this.environment;
+        Environment pooled = stmt.scopeEscapes ? null : acquireScope(previous); //reused by every iteration
+        try {
+            while (iterator.hasNext()) {
+                Environment scope;
+                if (pooled == null) {
+                    scope = new Environment(previous); //fresh scope per iteration, closures capture their own value
+                    metrics.environments.increment();
+                } else {
+                    scope = pooled;
+                    scope.reset(previous);
+                }
+                allocated++;
+                scope.createBinding(stmt.identifier.lexeme, iterator.next());
+                this.environment = scope;
+                onIteration(stmt);
+                if (governor != null) governor.check(this, stmt.identifier);
+                execute(stmt.body);
+            }
+        } catch (BreakEx ex) {
+            return null;
+        } catch (NativeFunction.NativeError error) { //iterators backed by natives, e.g. a file read failing midway
+            throw new RuntimeError(stmt.identifier, error.getMessage());
+        } finally {
+            this.environment = previous;
+            iterator.close();
+            if (pooled != null) releaseScope(pooled);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitYieldStmt(Stmt.Yield stmt) {
+        Object value = evaluate(stmt.value);
+        yieldTarget.produce(value);
+        return null;
+    }
+
     @Override
     public Void visitExpressionStmt(Stmt.Expression stmt) {
         evaluate(stmt.expression);
         return null;
     }
 
+    @Override
+    public Void visitProbeStmt(Stmt.Probe stmt) { //only in the tree while a listener is attached, see FlexInstruments
+        FlexProbe probe = stmt.probe;
+        probe.enter();
+        Object value = null;
+        try {
+            for (Stmt statement : stmt.statements) execute(statement);
+        } catch (ReturnEx returnEx) {
+            value = returnEx.value;
+            throw returnEx;
+        } finally {
+            probe.exit(value);
+        }
+        return null;
+    }
+
     //--Visitor pattern expressions evaluation
     private Object evaluate(Expr expression) {
         return expression.accept(this);
@@ -145,7 +324,9 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
     @Override
     public Object visitAssignExpr(Expr.Assign expression) {
         Object value = evaluate(expression.expression);
-        environment.setBinding(expression.identifier, value);
+        GlobalCell cell = expression.cache.cell(home, expression.identifier.lexeme);
+        if (cell != null) cell.value = value;
+        else environment.setBinding(expression.identifier, value);
         return value;
     }
 
@@ -169,40 +350,54 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
     @Override
     public Object visitBinaryExpr(Expr.Binary expression) {
-        Object left = evaluate(expression.left);
-        Object right = evaluate(expression.right);
+        return binary(expression, evaluate(expression.left), evaluate(expression.right));
+    }
 
+    Object binary(Expr.Binary expression, Object left, Object right) {
         switch (expression.operator.type) {
             case SLASH -> {
                 checkNumericOperand(expression.operator, left, right);
-                return (double) left / (double) right;
+                if (left instanceof Long a && right instanceof Long b) return divide(a, b);
+                return toDouble(left) / toDouble(right);
             }
             case STAR -> {
                 checkNumericOperand(expression.operator, left, right);
-                return (double) left * (double) right;
+                if (left instanceof Long a && right instanceof Long b) return multiply(a, b);
+                return toDouble(left) * toDouble(right);
             }
             case MODULUS -> {
                 checkNumericOperand(expression.operator, left, right);
-                return (double) left % (double) right;
+                if (left instanceof Long a && right instanceof Long b && b != 0) return a % b;
+                return toDouble(left) % toDouble(right);
             }
             case MINUS -> {
                 checkNumericOperand(expression.operator, left, right);
-                return (double) left - (double) right;
+                if (left instanceof Long a && right instanceof Long b) return subtract(a, b);
+                return toDouble(left) - toDouble(right);
             }
             case PLUS -> {
-                if (left instanceof Double && right instanceof Double) {
-                    return (double) left + (double) right;
+                if (left instanceof Long a && right instanceof Long b) {
+                    return add(a, b);
+                }
+
+                if (isNumber(left) && isNumber(right)) {
+                    return toDouble(left) + toDouble(right);
                 }
 
                 if (left instanceof String || right instanceof String) {
+                    allocated++;
                     return stringify(left) + stringify(right);
                 }
 
                 throw new RuntimeError(expression.operator, "Expected operands to be number or string");
             }
             case GREATER -> {
-                if (left instanceof Double && right instanceof Double) {
-                    return (double) left > (double) right;
+                if (left instanceof Long a && right instanceof Long b) {
+                    return a > b;
+                }
+
+                if (isNumber(left) && isNumber(right)) {
+                    return toDouble(left) > toDouble(right);
                 }
 
                 if (left instanceof String && right instanceof String) {
@@ -212,8 +407,12 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
                 throw new RuntimeError(expression.operator, "Expected both operands to be number or string");
             }
             case GREATER_EQUAL -> {
-                if (left instanceof Double && right instanceof Double) {
-                    return (double) left >= (double) right;
+                if (left instanceof Long a && right instanceof Long b) {
+                    return a >= b;
+                }
+
+                if (isNumber(left) && isNumber(right)) {
+                    return toDouble(left) >= toDouble(right);
                 }
 
                 if (left instanceof String && right instanceof String) {
@@ -223,8 +422,12 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
                 throw new RuntimeError(expression.operator, "Expected both operands to be number or string");
             }
             case LESS -> {
-                if (left instanceof Double && right instanceof Double) {
-                    return (double) left < (double) right;
+                if (left instanceof Long a && right instanceof Long b) {
+                    return a < b;
+                }
+
+                if (isNumber(left) && isNumber(right)) {
+                    return toDouble(left) < toDouble(right);
                 }
 
                 if (left instanceof String && right instanceof String) {
@@ -234,8 +437,12 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
                 throw new RuntimeError(expression.operator, "Expected both operands to be number or string");
             }
             case LESS_EQUAL -> {
-                if (left instanceof Double && right instanceof Double) {
-                    return (double) left <= (double) right;
+                if (left instanceof Long a && right instanceof Long b) {
+                    return a <= b;
+                }
+
+                if (isNumber(left) && isNumber(right)) {
+                    return toDouble(left) <= toDouble(right);
                 }
 
                 if (left instanceof String && right instanceof String) {
@@ -265,6 +472,10 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
             }
             case MINUS -> {
                 checkNumericOperand(expression.operator, right);
+                if (right instanceof Long value) {
+                    if (value == Long.MIN_VALUE) return -(double) value;
+                    return -value;
+                }
                 return -(Double) right;
             }
         }
@@ -291,9 +502,108 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
         try {
             return function.call(this, args);
-        } catch (ReturnEx returnEx) {
-            return returnEx.value;
+        } catch (NativeFunction.NativeError error) {
+            if (governor != null) governor.check(this, expression.paren); //a wait interrupted by the end of the run
+            throw new RuntimeError(expression.paren, error.getMessage());
+        }
+    }
+
+    @Override
+    public Object visitListLiteralExpr(Expr.ListLiteral expression) {
+        FlexList list = new FlexList();
+        allocated++;
+        for (Expr element : expression.elements) {
+            list.add(evaluate(element));
+        }
+        return list;
+    }
+
+    @Override
+    public Object visitIndexExpr(Expr.Index expression) {
+        Object object = evaluate(expression.object);
+        Object index = evaluate(expression.index);
+
+        if (object instanceof FlexList list) {
+            return list.get(checkIndex(expression.bracket, index, list.size()));
+        }
+
+        if (object instanceof FlexDict dict) {
+            Object value = dict.get(index, FlexDict.class);
+            if (value == FlexDict.class) throw new RuntimeError(expression.bracket, "Undefined key '" + stringify(index) + "'");
+            return value;
+        }
+
+        throw new RuntimeError(expression.bracket, "Only lists and dictionaries can be indexed");
+    }
+
+    @Override
+    public Object visitIndexAssignExpr(Expr.IndexAssign expression) {
+        Object object = evaluate(expression.object);
+        Object index = evaluate(expression.index);
+        Object value = evaluate(expression.value);
+
+        if (object instanceof FlexList list) {
+            list.set(checkIndex(expression.bracket, index, list.size()), value);
+            return value;
+        }
+
+        if (object instanceof FlexDict dict) {
+            dict.put(index, value);
+            return value;
+        }
+
+        throw new RuntimeError(expression.bracket, "Only lists and dictionaries can be indexed");
+    }
+
+    @Override
+    public Object visitDictLiteralExpr(Expr.DictLiteral expression) {
+        FlexDict dict = new FlexDict();
+        allocated++;
+        for (int i = 0; i < expression.keys.size(); i++) {
+            Object key = evaluate(expression.keys.get(i));
+            dict.put(key, evaluate(expression.values.get(i)));
+        }
+        return dict;
+    }
+
+    @Override
+    public Object visitGetExpr(Expr.Get expression) {
+        Object object = evaluate(expression.object);
+        if (object instanceof FlexInstance instance) {
+            return expression.cache.read(instance, expression.identifier);
         }
+
+        throw new RuntimeError(expression.identifier, "Only instances have properties");
+    }
+
+    @Override
+    public Object visitSetExpr(Expr.Set expression) {
+        Object object = evaluate(expression.object);
+        if (!(object instanceof FlexInstance instance)) {
+            throw new RuntimeError(expression.identifier, "Only instances have fields");
+        }
+
+        Object value = evaluate(expression.value);
+        expression.cache.write(instance, expression.identifier, value);
+        return value;
+    }
+
+    @Override
+    public Object visitThisExpr(Expr.This expression) {
+        return environment.getBinding(expression.keyword);
+    }
+
+    @Override
+    public Object visitSuperExpr(Expr.Super expression) {
+        FlexClass superclass = (FlexClass) environment.getBinding(expression.keyword);
+        Token thisToken = new Token(TokenType.THIS, "this", null, expression.keyword.line, expression.keyword.column);
+        FlexInstance instance = (FlexInstance) environment.getBinding(thisToken);
+
+        FlexFunction method = superclass.findMethod(expression.method.lexeme);
+        if (method == null) {
+            throw new RuntimeError(expression.method, "Undefined property '" + expression.method.lexeme + "'.");
+        }
+        return method.bind(instance);
     }
 
     @Override
@@ -303,6 +613,8 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
     @Override
     public Object visitVariableExpr(Expr.Variable expression) {
+        GlobalCell cell = expression.cache.cell(home, expression.identifier.lexeme);
+        if (cell != null) return cell.value; //no walk up the scopes nor hashing
         return environment.getBinding(expression.identifier);
     }
 
@@ -312,34 +624,81 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
     }
 
     //--Utilities
-    private boolean isTruth(Object obj) {
+    static boolean isTruth(Object obj) {
         if (obj instanceof Boolean) return (boolean) obj;
+        if (obj instanceof Long) return (long) obj != 0;
         if (obj instanceof Double) return (double) obj != 0;
         return obj != null;
     }
 
+    private static FlexIterator iterate(Token identifier, Object iterable) {
+        if (iterable instanceof FlexIterator iterator) return iterator;
+        if (iterable instanceof FlexList list) return FlexIterator.over(list);
+        if (iterable instanceof FlexDict dict) return FlexIterator.over(dict.keys()); //keys are copied, the loop may change the dictionary
+        throw new RuntimeError(identifier, "Can only iterate over lists, dictionaries and generators");
+    }
+
     private boolean isEqual(Object a, Object b) {
         if (a == null) {
             return b == null;
         }
 
+        if (a instanceof Long && b instanceof Double || a instanceof Double && b instanceof Long) {
+            return toDouble(a) == toDouble(b);
+        }
+
         return a.equals(b);
     }
 
+    private int checkIndex(Token bracket, Object index, int size) {
+        try {
+            return Natives.index(index, size);
+        } catch (NativeFunction.NativeError error) {
+            throw new RuntimeError(bracket, error.getMessage());
+        }
+    }
+
     private void checkNumericOperand(Token operator, Object ... operands) {
         for (Object operand : operands) {
-            if (!(operand instanceof Double)) throw new RuntimeError(operator, "Expected all operands to be number");
+            if (!isNumber(operand)) throw new RuntimeError(operator, "Expected all operands to be number");
         }
     }
 
+    //--Numeric tower (integers stay on long while exact, otherwise promote to double)
+    private static boolean isNumber(Object obj) {
+        return obj instanceof Long || obj instanceof Double;
+    }
+
+    private static double toDouble(Object number) {
+        if (number instanceof Long) return (long) number;
+        return (double) number;
+    }
+
+    private static Object add(long a, long b) {
+        long result = a + b;
+        if (((a ^ result) & (b ^ result)) < 0) return (double) a + (double) b;
+        return result;
+    }
+
+    private static Object subtract(long a, long b) {
+        long result = a - b;
+        if (((a ^ b) & (a ^ result)) < 0) return (double) a - (double) b;
+        return result;
+    }
+
+    private static Object multiply(long a, long b) {
+        long high = Math.multiplyHigh(a, b);
+        long result = a * b;
+        if ((high == 0 && result >= 0) || (high == -1 && result < 0)) return result;
+        return (double) a * (double) b;
+    }
+
+    private static Object divide(long a, long b) {
+        if (b != 0 && a % b == 0 && !(a == Long.MIN_VALUE && b == -1)) return a / b;
+        return (double) a / (double) b;
+    }
+
     private String stringify(Object a) {
-        if (a == null) return "null";
-        if (a instanceof Double) {
-            if ((double) a % 1 == 0) {
-                String str = a.toString();
-                return str.substring(0, str.length() - 2);
-            }
-        }
-        return a.toString();
+        return FlexOutput.stringify(a);
     }
 }
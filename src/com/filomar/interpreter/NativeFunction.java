@@ -0,0 +1,75 @@
+package com.filomar.interpreter;
+
+import java.util.List;
+
+public class NativeFunction implements FlexCallable {
+    //Nested classes
+    interface Body {
+        Object call(Interpreter interpreter, List<Object> arguments) throws InterruptedException;
+    }
+
+    static class NativeError extends RuntimeException { //rethrown by the interpreter as a RuntimeError at the call site
+        NativeError(String message) {
+            super(message);
+        }
+    }
+
+    //Fields
+    private final String name;
+    private final int arity;
+    private final Body body;
+    private final boolean builtin; //false for functions supplied by an embedding host
+
+    //Constructors
+    NativeFunction(String name, int arity, Body body) {
+        this(name, arity, body, true);
+    }
+
+    private NativeFunction(String name, int arity, Body body, boolean builtin) {
+        this.name = name;
+        this.arity = arity;
+        this.body = body;
+        this.builtin = builtin;
+    }
+
+    static NativeFunction host(String name, int arity, FlexHostFunction function) {
+        return new NativeFunction(name, arity, (interpreter, arguments) -> {
+            try {
+                return FlexContext.toFlex(function.call(arguments));
+            } catch (NativeError | InterruptedException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new NativeError(e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
+            }
+        }, false);
+    }
+
+    //Methods
+    String name() {
+        return name;
+    }
+
+    boolean isBuiltin() {
+        return builtin;
+    }
+
+    @Override
+    public int arity() {
+        return arity;
+    }
+
+    @Override
+    public Object call(Interpreter interpreter, List<Object> arguments) {
+        try {
+            return body.call(interpreter, arguments);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new NativeError("Interrupted while waiting in " + name);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "<native " + name + " fun>";
+    }
+}
@@ -0,0 +1,197 @@
+package com.filomar.interpreter;
+
+import com.filomar.interpreter.NativeFunction.NativeError;
+
+import java.util.List;
+
+final class Natives {
+    //Fields
+    private static final Environment LIBRARY = new Environment(); //one shared instance of every built-in, natives are stateless
+
+    static {
+        define(LIBRARY);
+    }
+
+    //Constructors
+    private Natives() {}
+
+    //Methods
+    static NativeFunction builtin(String name) {
+        return LIBRARY.getLocalBinding(name) instanceof NativeFunction function ? function : null;
+    }
+
+    static void define(Environment globals) {
+        //--Time
+        define(globals, "clock", 0, (interpreter, args) -> (double) System.currentTimeMillis());
+        define(globals, "nanoTime", 0, (interpreter, args) -> System.nanoTime());
+
+        //--Benchmarking
+        define(globals, "bench", 3, (interpreter, args) -> {
+            FlexCallable callable = callable(args.get(0), 0);
+            if (!(args.get(1) instanceof Long warmup) || !(args.get(2) instanceof Long iterations)
+                    || warmup < 0 || iterations < 1 || warmup > Integer.MAX_VALUE || iterations > Integer.MAX_VALUE) {
+                throw new NativeError("Expected warmup >= 0 and iterations >= 1");
+            }
+            return FlexBench.measure(callable.toString(), () -> callable.call(interpreter, List.of()),
+                    (int) (long) warmup, (int) (long) iterations, true).toDict();
+        });
+
+        //--Lists
+        define(globals, "len", 1, (interpreter, args) -> {
+            if (args.get(0) instanceof FlexList list) return (long) list.size();
+            if (args.get(0) instanceof FlexDict dict) return (long) dict.size();
+            if (args.get(0) instanceof String string) return (long) string.length();
+            throw new NativeError("Expected a list, a dictionary or a string");
+        });
+        define(globals, "push", 2, (interpreter, args) -> {
+            FlexList list = list(args.get(0));
+            list.add(args.get(1));
+            return list;
+        });
+        define(globals, "pop", 1, (interpreter, args) -> {
+            FlexList list = list(args.get(0));
+            if (list.size() == 0) throw new NativeError("Cannot pop from an empty list");
+            return list.remove(list.size() - 1);
+        });
+        define(globals, "insert", 3, (interpreter, args) -> {
+            FlexList list = list(args.get(0));
+            list.insert(index(args.get(1), list.size() + 1), args.get(2));
+            return list;
+        });
+        define(globals, "removeAt", 2, (interpreter, args) -> {
+            FlexList list = list(args.get(0));
+            return list.remove(index(args.get(1), list.size()));
+        });
+        define(globals, "slice", 3, (interpreter, args) -> {
+            FlexList list = list(args.get(0));
+            int from = index(args.get(1), list.size() + 1);
+            int to = index(args.get(2), list.size() + 1);
+            if (from > to) throw new NativeError("Slice start must not be greater than its end");
+            return list.slice(from, to);
+        });
+
+        //--Dictionaries
+        define(globals, "keys", 1, (interpreter, args) -> dict(args.get(0)).keys());
+        define(globals, "values", 1, (interpreter, args) -> dict(args.get(0)).values());
+        define(globals, "entries", 1, (interpreter, args) -> dict(args.get(0)).entries());
+        define(globals, "has", 2, (interpreter, args) -> dict(args.get(0)).containsKey(args.get(1)));
+        define(globals, "get", 3, (interpreter, args) -> dict(args.get(0)).get(args.get(1), args.get(2)));
+        define(globals, "remove", 2, (interpreter, args) -> dict(args.get(0)).remove(args.get(1), null));
+
+        //--Concurrency
+        define(globals, "spawn", 1, (interpreter, args) -> {
+            FlexCallable callable = callable(args.get(0));
+            if (callable.arity() != 0) throw new NativeError("Spawned functions cannot take arguments");
+            return FlexTask.spawn(interpreter, callable, List.of());
+        });
+        define(globals, "join", 1, (interpreter, args) -> task(args.get(0)).join());
+        define(globals, "done", 1, (interpreter, args) -> task(args.get(0)).isDone());
+        define(globals, "channel", 1, (interpreter, args) -> {
+            if (!(args.get(0) instanceof Long capacity) || capacity < 1 || capacity > Integer.MAX_VALUE - 8) {
+                throw new NativeError("Channel capacity must be a positive integer");
+            }
+            return new FlexChannel((int) (long) capacity);
+        });
+        define(globals, "send", 2, (interpreter, args) -> {
+            channel(args.get(0)).send(args.get(1));
+            return null;
+        });
+        define(globals, "receive", 1, (interpreter, args) -> channel(args.get(0)).receive());
+        define(globals, "close", 1, (interpreter, args) -> {
+            channel(args.get(0)).close();
+            return null;
+        });
+
+        //--Iteration
+        define(globals, "range", 2, (interpreter, args) -> {
+            if (!(args.get(0) instanceof Long start) || !(args.get(1) instanceof Long end)) {
+                throw new NativeError("Range bounds must be integers");
+            }
+            return FlexIterator.range(start, end);
+        });
+        define(globals, "hasNext", 1, (interpreter, args) -> iterator(args.get(0)).hasNext());
+        define(globals, "next", 1, (interpreter, args) -> {
+            FlexIterator iterator = iterator(args.get(0));
+            if (!iterator.hasNext()) throw new NativeError("No more values to iterate over");
+            return iterator.next();
+        });
+
+        //--Files
+        define(globals, "readLines", 1, (interpreter, args) -> FlexFiles.readLines(string(args.get(0))));
+        define(globals, "readRange", 3, (interpreter, args) ->
+                FlexFiles.readRange(string(args.get(0)), offset(args.get(1)), offset(args.get(2))));
+        define(globals, "chunks", 2, (interpreter, args) -> FlexFiles.chunks(string(args.get(0)), offset(args.get(1))));
+        define(globals, "fileSize", 1, (interpreter, args) -> FlexFiles.fileSize(string(args.get(0))));
+        define(globals, "writeAll", 2, (interpreter, args) -> FlexFiles.writeAll(string(args.get(0)), args.get(1)));
+        define(globals, "append", 2, (interpreter, args) -> FlexFiles.append(string(args.get(0)), args.get(1)));
+
+        //--Data parallelism
+        define(globals, "parallelMap", 2, (interpreter, args) ->
+                FlexParallel.map(interpreter, list(args.get(0)), callable(args.get(1), 1)));
+        define(globals, "parallelFilter", 2, (interpreter, args) ->
+                FlexParallel.filter(interpreter, list(args.get(0)), callable(args.get(1), 1)));
+        define(globals, "parallelReduce", 3, (interpreter, args) ->
+                FlexParallel.reduce(interpreter, list(args.get(0)), callable(args.get(1), 2), args.get(2)));
+    }
+
+    private static void define(Environment globals, String name, int arity, NativeFunction.Body body) {
+        globals.createBinding(name, new NativeFunction(name, arity, body));
+    }
+
+    //--Argument checking
+    static FlexList list(Object value) {
+        if (value instanceof FlexList list) return list;
+        throw new NativeError("Expected a list");
+    }
+
+    static FlexCallable callable(Object value) {
+        if (value instanceof FlexCallable callable) return callable;
+        throw new NativeError("Expected a function");
+    }
+
+    static FlexCallable callable(Object value, int arity) {
+        FlexCallable callable = callable(value);
+        if (callable.arity() != arity) throw new NativeError("Expected a function taking " + arity + (arity == 1 ? " argument" : " arguments"));
+        return callable;
+    }
+
+    static String string(Object value) {
+        if (value instanceof String string) return string;
+        throw new NativeError("Expected a string");
+    }
+
+    static long offset(Object value) {
+        if (value instanceof Long number && number >= 0) return number;
+        throw new NativeError("Expected a non-negative integer");
+    }
+
+    static FlexIterator iterator(Object value) {
+        if (value instanceof FlexIterator iterator) return iterator;
+        throw new NativeError("Expected a generator or a range");
+    }
+
+    static FlexTask task(Object value) {
+        if (value instanceof FlexTask task) return task;
+        throw new NativeError("Expected a task");
+    }
+
+    static FlexChannel channel(Object value) {
+        if (value instanceof FlexChannel channel) return channel;
+        throw new NativeError("Expected a channel");
+    }
+
+    static FlexDict dict(Object value) {
+        if (value instanceof FlexDict dict) return dict;
+        throw new NativeError("Expected a dictionary");
+    }
+
+    static int index(Object value, int bound) { //bound is exclusive
+        long index;
+        if (value instanceof Long number) index = number;
+        else if (value instanceof Double number && number % 1 == 0) index = (long) (double) number;
+        else throw new NativeError("List index must be an integer");
+
+        if (index < 0 || index >= bound) throw new NativeError("List index " + index + " out of range");
+        return (int) index;
+    }
+}
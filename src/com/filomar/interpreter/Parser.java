@@ -1,8 +1,11 @@
 package com.filomar.interpreter;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import static com.filomar.interpreter.TokenType.*;
 
@@ -10,35 +13,102 @@ public class Parser {
     //Nested classes
     private static class ParseError extends RuntimeException {}
 
+    private static final class Scope { //local scope being parsed, globals are the names declared outside every scope
+        final Set<String> declared = new HashSet<>();
+        final List<Expr.Variable> references = new ArrayList<>(); //not declared by any scope closed so far
+    }
+
     //Fields
     private final List<Token> tokens;
+    private final ErrorReporter reporter;
     private int current = 0;
     private int loopDepth = 0;
+    private int classDepth = 0;
+    private int functionDepth = 0;
+    private boolean yielded = false; //the function being parsed contains a yield, which makes it a generator
+    private int declarations = 0; //functions and classes parsed so far, every scope around one of them can be captured
+    private final ArrayDeque<Scope> scopes = new ArrayDeque<>(); //innermost first
 
     //Constructors
-    Parser(List<Token> tokens) {
+    Parser(List<Token> tokens, ErrorReporter reporter) {
         this.tokens = tokens;
+        this.reporter = reporter;
     }
 
     //Methods
     //--Parsing
     List<Stmt> parse() {
+        FlexEvents.Parse event = new FlexEvents.Parse();
+        event.begin();
         List<Stmt> statements = new ArrayList<>();
-        while (!isAtEnd()) {
-            statements.add(declaration());
+        while (hasNext()) {
+            statements.add(next());
+        }
+        if (event.shouldCommit()) {
+            event.tokens = tokens.size();
+            event.statements = statements.size();
+            event.commit();
         }
         return statements;
     }
 
+    //Incremental parsing, one top-level declaration per call, null when it had a syntax error
+    boolean hasNext() {
+        return !isAtEnd();
+    }
+
+    Stmt next() {
+        return declaration();
+    }
+
     //--Declarations parsing
     private Stmt declaration() {
-        if (match(FUN)) return funDclStmt();
-        if (match(VAR)) return varDclStmt();
-        return statement();
+        try {
+            if (match(CLASS)) return classDclStmt();
+            if (match(FUN)) return funDclStmt();
+            if (match(VAR)) return varDclStmt();
+            return statement();
+        } catch (ParseError error) {
+            synchronize();
+            return null;
+        }
+    }
+
+    private Stmt classDclStmt() {
+        Token identifier = consume(IDENTIFIER, "Expected a valid class name");
+        declare(identifier);
+
+        Expr.Variable superclass = null;
+        if (match(LESS)) {
+            superclass = reference(consume(IDENTIFIER, "Expected a valid superclass name"));
+            if (superclass.identifier.lexeme.equals(identifier.lexeme)) {
+                throw error(superclass.identifier, "A class cannot inherit from itself");
+            }
+        }
+
+        consume(LEFT_BRACE, "Expected '{' before class body");
+        List<Stmt.FunDcl> methods = new ArrayList<>();
+        try {
+            classDepth++;
+            while (current().type != RIGHT_BRACE && !isAtEnd()) {
+                Stmt.FunDcl method = (Stmt.FunDcl) funDclStmt();
+                if (method.isGenerator && method.identifier.lexeme.equals("init")) {
+                    throw error(method.identifier, "An initializer cannot be a generator");
+                }
+                methods.add(method);
+            }
+        } finally {
+            classDepth--;
+        }
+        consume(RIGHT_BRACE, "Expected '}' after class body");
+
+        declarations++;
+        return new Stmt.ClassDcl(identifier, superclass, methods);
     }
 
     private Stmt funDclStmt() {
         Token identifier = consume(IDENTIFIER, "Expected a valid function/method name");
+        declare(identifier);
         consume(LEFT_PAREN, "Expected '(' after function/method name");
         List<Token> parameters = new ArrayList<>();
         if (!match(RIGHT_PAREN)) {
@@ -52,13 +122,32 @@ public class Parser {
             consume(RIGHT_PAREN, "Expected ')' after parameters");
         }
         consume(LEFT_BRACE, "Expect '{' before function/method body");
-        List<Stmt> body = blockCollector();
 
-        return new Stmt.FunDcl(identifier, parameters, body);
+        boolean enclosingYielded = yielded;
+        int enclosingDeclarations = declarations;
+        List<Stmt> body;
+        boolean isGenerator;
+        try {
+            functionDepth++;
+            yielded = false;
+            beginScope();
+            for (Token parameter : parameters) declare(parameter);
+            body = blockCollector();
+            isGenerator = yielded;
+        } finally {
+            endScope();
+            functionDepth--;
+            yielded = enclosingYielded;
+        }
+
+        boolean scopeEscapes = isGenerator || declarations != enclosingDeclarations; //a generator's scope lives on in its handoff
+        declarations++;
+        return new Stmt.FunDcl(identifier, parameters, body, isGenerator, scopeEscapes);
     }
 
     private Stmt varDclStmt() {
         Token identifier = consume(IDENTIFIER, "Expected a valid variable name");
+        declare(identifier);
 
         Expr initializer = new Expr.Literal(null);
         if (match(EQUAL)) {
@@ -72,13 +161,14 @@ public class Parser {
     //--Statements parsing
     private Stmt statement() {
         try {
-            if (match(LEFT_BRACE)) return new Stmt.Block(blockCollector());
+            if (match(LEFT_BRACE)) return blockStmt();
             if (match(BREAK)) return breakStmt();
             if (match(FOR)) return forStmt();
             if (match(IF)) return ifStmt();
             if (match(PRINT)) return printStmt();
             if (match(RETURN)) return returnStmt();
             if (match(WHILE)) return whileStmt();
+            if (match(YIELD)) return yieldStmt();
             return expressionStmt();
         } catch (ParseError error) {
             synchronize();
@@ -86,6 +176,18 @@ public class Parser {
         }
     }
 
+    private Stmt blockStmt() {
+        int enclosingDeclarations = declarations;
+        List<Stmt> statements;
+        try {
+            beginScope();
+            statements = blockCollector();
+        } finally {
+            endScope();
+        }
+        return new Stmt.Block(statements, declarations != enclosingDeclarations);
+    }
+
     private List<Stmt> blockCollector() {
         List<Stmt> statements = new ArrayList<>();
 
@@ -106,13 +208,24 @@ public class Parser {
         return new Stmt.Break();
     }
 
-    private Stmt forStmt() { //Syntactic sugar, parsed as a 'WHILE' --> see scripts/for_loop_issue.flx
+    private Stmt forStmt() {
+        try {
+            beginScope(); //of the initializer variable
+            return forLoop();
+        } finally {
+            endScope();
+        }
+    }
+
+    private Stmt forLoop() { //Syntactic sugar, parsed as a 'WHILE' --> see scripts/for_loop_issue.flx
+        Token keyword = previous();
         consume(LEFT_PAREN, "Expected '(' before condition");
 
         Stmt initializer;
         if (match(SEMICOLON)) {
             initializer = null;
         } else if (match(VAR)) {
+            if (current().type == IDENTIFIER && peekNext().type == IN) return forInStmt();
             initializer = varDclStmt();
         } else {
             initializer = expressionStmt();
@@ -132,22 +245,24 @@ public class Parser {
 
         try {
             loopDepth++;
+            int enclosingDeclarations = declarations;
             Stmt body = statement();
+            boolean scopeEscapes = declarations != enclosingDeclarations;
 
             if (increment != null) {
                 body = new Stmt.Block(Arrays.asList(
                         body,
                         new Stmt.Expression(increment)
-                ));
+                ), scopeEscapes);
             }
 
-            body = new Stmt.While((condition != null ? condition : new Expr.Literal(true)), body);
+            body = new Stmt.While(keyword, (condition != null ? condition : new Expr.Literal(true)), body);
 
             if (initializer != null) {
                 body = new Stmt.Block(Arrays.asList(
                         initializer,
                         body
-                ));
+                ), scopeEscapes);
             }
 
             return body;
@@ -156,6 +271,25 @@ public class Parser {
         }
     }
 
+    private Stmt forInStmt() {
+        Token identifier = consume(IDENTIFIER, "Expected a valid variable name");
+        consume(IN, "Expected 'in' after the loop variable");
+        Expr iterable = expression();
+        consume(RIGHT_PAREN, "Expected ')' after the iterated expression");
+
+        try {
+            loopDepth++;
+            beginScope();
+            declare(identifier);
+            int enclosingDeclarations = declarations;
+            Stmt body = statement();
+            return new Stmt.ForIn(identifier, iterable, body, declarations != enclosingDeclarations);
+        } finally {
+            endScope();
+            loopDepth--;
+        }
+    }
+
     private Stmt ifStmt() {
         consume(LEFT_PAREN, "Expected '(' before condition");
         Expr condition = expression();
@@ -186,7 +320,20 @@ public class Parser {
         return new Stmt.Return(value);
     }
 
+    private Stmt yieldStmt() {
+        Token keyword = previous();
+        if (functionDepth == 0) {
+            throw error(keyword, "Cannot use 'yield' outside a function.");
+        }
+
+        Expr value = expression();
+        consume(SEMICOLON, "Expected ';' at the end of a statement");
+        yielded = true;
+        return new Stmt.Yield(keyword, value);
+    }
+
     private Stmt whileStmt() {
+        Token keyword = previous();
         consume(LEFT_PAREN, "Expected '(' before condition");
         Expr condition = expression();
         consume(RIGHT_PAREN, "Expected ')' after condition");
@@ -195,7 +342,7 @@ public class Parser {
             loopDepth++;
             Stmt body = statement();
 
-            return new Stmt.While(condition, body);
+            return new Stmt.While(keyword, condition, body);
         } finally {
             loopDepth--;
         }
@@ -219,8 +366,16 @@ public class Parser {
             Token op = previous();
             Expr right = assignmentExpr();
 
-            if (expr instanceof Expr.Variable) {
-                return new Expr.Assign(((Expr.Variable) expr).identifier, right);
+            if (expr instanceof Expr.Variable variable) { //shares the cache, and with it what the scopes tell about the name
+                return new Expr.Assign(variable.identifier, right, variable.cache);
+            }
+
+            if (expr instanceof Expr.Index index) {
+                return new Expr.IndexAssign(index.object, index.bracket, index.index, right);
+            }
+
+            if (expr instanceof Expr.Get get) {
+                return new Expr.Set(get.object, get.identifier, right, new PropertyCache());
             }
 
             throw error(op, "Invalid assignment target");
@@ -333,6 +488,14 @@ public class Parser {
                 }
 
                 expr = new Expr.Call(expr, paren, arguments);
+            } else if (match(LEFT_BRACKET)) {
+                Token bracket = previous();
+                Expr index = expression();
+                consume(RIGHT_BRACKET, "Expected ']' after index");
+                expr = new Expr.Index(expr, bracket, index);
+            } else if (match(DOT)) {
+                Token identifier = consume(IDENTIFIER, "Expected a property name after '.'");
+                expr = new Expr.Get(expr, identifier, new PropertyCache());
             } else {
                 break;
             }
@@ -346,7 +509,20 @@ public class Parser {
         if (match(TRUE)) return new Expr.Literal(true);
         if (match(NULL)) return new Expr.Literal(null);
         if (match(NUMBER, STRING)) return new Expr.Literal(previous().literal);
-        if (match(IDENTIFIER)) return new Expr.Variable(previous());
+        if (match(IDENTIFIER)) return reference(previous());
+        if (match(THIS)) {
+            if (classDepth == 0) throw error(previous(), "Cannot use 'this' outside a class");
+            return new Expr.This(previous());
+        }
+        if (match(SUPER)) {
+            Token keyword = previous();
+            if (classDepth == 0) throw error(keyword, "Cannot use 'super' outside a class");
+            consume(DOT, "Expected '.' after 'super'");
+            Token method = consume(IDENTIFIER, "Expected a superclass method name");
+            return new Expr.Super(keyword, method);
+        }
+        if (match(LEFT_BRACKET)) return listLiteralExpr();
+        if (match(LEFT_BRACE)) return dictLiteralExpr();
         if (match(LEFT_PAREN)) {
             Expr expr = expression();
             consume(RIGHT_PAREN, "Expected ')' after the expression");
@@ -356,9 +532,69 @@ public class Parser {
         throw error(current(), "Expected a primary expression");
     }
 
+    private Expr listLiteralExpr() {
+        Token bracket = previous();
+        List<Expr> elements = new ArrayList<>();
+        if (!match(RIGHT_BRACKET)) {
+            do {
+                elements.add(expression());
+            } while (match(COMMA));
+            consume(RIGHT_BRACKET, "Expected ']' after list elements");
+        }
+
+        return new Expr.ListLiteral(bracket, elements);
+    }
+
+    private Expr dictLiteralExpr() { //bare identifier keys are sugar for string keys, as in {name: "flex"}
+        Token brace = previous();
+        List<Expr> keys = new ArrayList<>();
+        List<Expr> values = new ArrayList<>();
+        if (!match(RIGHT_BRACE)) {
+            do {
+                if (current().type == IDENTIFIER && peekNext().type == COLON) {
+                    advance();
+                    keys.add(new Expr.Literal(previous().lexeme));
+                } else {
+                    keys.add(expression());
+                }
+                consume(COLON, "Expected ':' after dictionary key");
+                values.add(expression());
+            } while (match(COMMA));
+            consume(RIGHT_BRACE, "Expected '}' after dictionary entries");
+        }
+
+        return new Expr.DictLiteral(brace, keys, values);
+    }
+
+    //--Scopes
+    //A name no enclosing local scope declares, before or after the reference, can only be found in the globals
+    private void beginScope() {
+        scopes.push(new Scope());
+    }
+
+    private void endScope() {
+        Scope scope = scopes.pop();
+        for (Expr.Variable reference : scope.references) {
+            if (scope.declared.contains(reference.identifier.lexeme)) continue;
+            if (scopes.isEmpty()) reference.cache.markGlobal();
+            else scopes.peek().references.add(reference);
+        }
+    }
+
+    private void declare(Token identifier) {
+        if (!scopes.isEmpty()) scopes.peek().declared.add(identifier.lexeme);
+    }
+
+    private Expr.Variable reference(Token identifier) {
+        Expr.Variable variable = new Expr.Variable(identifier, new GlobalCache());
+        if (scopes.isEmpty()) variable.cache.markGlobal();
+        else scopes.peek().references.add(variable);
+        return variable;
+    }
+
     //--Error reporting and recovery
     private ParseError error(Token token, String message) {
-        Flex.onErrorDetected(token.line, token.column, message);
+        reporter.onErrorDetected(token.line, token.column, message);
         return new ParseError();
     }
 
@@ -370,7 +606,7 @@ public class Parser {
             if (previous().type == SEMICOLON) return;
 
             switch (current().type) {
-                case CLASS, FUN, FOR, IF, PRINT, RETURN, VAR, WHILE -> { return; }
+                case CLASS, FUN, FOR, IF, PRINT, RETURN, VAR, WHILE, YIELD -> { return; }
             }
 
             advance();
@@ -411,4 +647,9 @@ public class Parser {
     private Token current() { //EOF safe
         return tokens.get(current);
     }
+
+    private Token peekNext() { //EOF safe
+        if (isAtEnd()) return current();
+        return tokens.get(current + 1);
+    }
 }
@@ -0,0 +1,69 @@
+package com.filomar.interpreter;
+
+//Monomorphic inline cache owned by a single Get/Set site, re-targeted to the last shape seen on a miss
+//Entries are immutable and swapped as a whole, so a shared AST stays correct when several threads race on a site
+final class PropertyCache {
+    //Nested classes
+    private static final class Entry {
+        final Shape shape;
+        final int slot; //-1 when the site resolved to a method
+        final FlexFunction method;
+        final Shape next; //shape after a field-adding store, null for plain stores
+
+        Entry(Shape shape, int slot, FlexFunction method, Shape next) {
+            this.shape = shape;
+            this.slot = slot;
+            this.method = method;
+            this.next = next;
+        }
+    }
+
+    //Fields
+    private Entry entry;
+
+    //Methods
+    Object read(FlexInstance instance, Token identifier) {
+        Entry cached = entry;
+        if (cached != null && cached.shape == instance.shape) {
+            if (cached.slot >= 0) return instance.slots[cached.slot];
+            return cached.method.bind(instance);
+        }
+
+        Shape shape = instance.shape;
+        int slot = shape.slotOf(identifier.lexeme);
+        if (slot >= 0) {
+            entry = new Entry(shape, slot, null, null);
+            return instance.slots[slot];
+        }
+
+        FlexFunction method = shape.owner.findMethod(identifier.lexeme);
+        if (method != null) {
+            entry = new Entry(shape, -1, method, null);
+            return method.bind(instance);
+        }
+
+        throw new RuntimeError(identifier, "Undefined property '" + identifier.lexeme + "'.");
+    }
+
+    void write(FlexInstance instance, Token identifier, Object value) {
+        Entry cached = entry;
+        if (cached != null && cached.shape == instance.shape) {
+            if (cached.next != null) instance.grow(cached.next);
+            instance.slots[cached.slot] = value;
+            return;
+        }
+
+        Shape shape = instance.shape;
+        int slot = shape.slotOf(identifier.lexeme);
+        if (slot >= 0) {
+            entry = new Entry(shape, slot, null, null);
+            instance.slots[slot] = value;
+            return;
+        }
+
+        Shape next = shape.withField(identifier.lexeme);
+        entry = new Entry(shape, shape.slotCount(), null, next);
+        instance.grow(next);
+        instance.slots[shape.slotCount()] = value;
+    }
+}
@@ -0,0 +1,9 @@
+package com.filomar.interpreter;
+
+//Runtime error that stops the whole program: an exhausted execution budget or Java stack
+//Blocks report and skip past ordinary runtime errors, this one goes straight up to the context
+class ResourceError extends RuntimeError {
+    ResourceError(Token token, String message) {
+        super(token, message);
+    }
+}
@@ -10,6 +10,7 @@ import static com.filomar.interpreter.TokenType.*;
 public class Scanner {
     //Fields
     private final String source;
+    private final ErrorReporter reporter;
     private final List<Token> tokens = new ArrayList<>();
     private int start = 0;
     private int next = 0;
@@ -28,6 +29,7 @@ public class Scanner {
         keywords.put("for", FOR);
         keywords.put("fun", FUN);
         keywords.put("if", IF);
+        keywords.put("in", IN);
         keywords.put("null", NULL);
         keywords.put("or", OR);
         keywords.put("print", PRINT);
@@ -37,22 +39,31 @@ public class Scanner {
         keywords.put("true", TRUE);
         keywords.put("var", VAR);
         keywords.put("while", WHILE);
+        keywords.put("yield", YIELD);
     }
 
     //Constructors
-    Scanner(String source) {
+    Scanner(String source, ErrorReporter reporter) {
         this.source = source;
+        this.reporter = reporter;
     }
 
     //Methods
     //--Scanning
     List<Token> scanTokens() {
+        FlexEvents.Scan event = new FlexEvents.Scan();
+        event.begin();
         while (!isAtEnd()) {
             start = next;
             scanToken();
         }
 
         tokens.add(new Token(EOF, "EOF", null, line, column + 1));
+        if (event.shouldCommit()) {
+            event.characters = source.length();
+            event.tokens = tokens.size();
+            event.commit();
+        }
         return tokens;
     }
 
@@ -64,6 +75,9 @@ public class Scanner {
             case ')' -> addToken(RIGHT_PAREN);
             case '{' -> addToken(LEFT_BRACE);
             case '}' -> addToken(RIGHT_BRACE);
+            case '[' -> addToken(LEFT_BRACKET);
+            case ']' -> addToken(RIGHT_BRACKET);
+            case ':' -> addToken(COLON);
             case ',' -> addToken(COMMA);
             case '.' -> addToken(DOT);
             case ';' -> addToken(SEMICOLON);
@@ -95,11 +109,11 @@ public class Scanner {
 
     //--Error reporting
     private void reportError(String message) {
-        Flex.onErrorDetected(line, column, message);
+        reporter.onErrorDetected(line, column, message);
     }
 
     private void reportError(int line, int column, String message) {
-        Flex.onErrorDetected(line, column, message);
+        reporter.onErrorDetected(line, column, message);
     }
 
     //--Type checking
@@ -127,18 +141,29 @@ public class Scanner {
         if (isAtEnd()) reportError(stringStartLine, stringStartColumn, "Unterminated string");
         else {
             advance();
-            addToken(STRING, source.substring(start + 1, next - 1));
+            addToken(STRING, source.substring(start + 1, next - 1).intern()); //interned, dictionary lookups hit the identity check
         }
     }
 
     private void numberLiteralHelper() {
         while (isDigit(peek())) advance();
 
-        if (peek() == '.' && isDigit(peek(2))) advance(2);
+        if (peek() == '.' && isDigit(peek(2))) {
+            advance(2);
+            while (isDigit(peek())) advance();
+            addToken(NUMBER, Double.parseDouble(source.substring(start, next)));
+            return;
+        }
 
-        while (isDigit(peek())) advance();
+        addToken(NUMBER, integerLiteral(source.substring(start, next)));
+    }
 
-        addToken(NUMBER, Double.parseDouble(source.substring(start, next)));
+    private Object integerLiteral(String text) { //literals that do not fit in a long keep the old double representation
+        try {
+            return Long.parseLong(text);
+        } catch (NumberFormatException e) {
+            return Double.parseDouble(text);
+        }
     }
 
     private void identifierHelper() {
@@ -147,7 +172,7 @@ public class Scanner {
         String text = source.substring(start, next);
         TokenType type = keywords.get(text);
         if (type == null) type = IDENTIFIER;
-        addToken(type);
+        addToken(type, null, text.intern());
     }
 
     //--Comment helpers
@@ -208,7 +233,10 @@ public class Scanner {
 
     //--Token list management
     private void addToken(TokenType type, Object literal) {
-        String lexeme = source.substring(start, next);
+        addToken(type, literal, source.substring(start, next));
+    }
+
+    private void addToken(TokenType type, Object literal, String lexeme) {
         tokens.add(new Token(type, lexeme, literal, line, column - lexeme.length() + 1));
     }
 
@@ -0,0 +1,51 @@
+package com.filomar.interpreter;
+
+import java.util.HashMap;
+import java.util.Map;
+
+//Hidden class shared by every instance that added the same fields in the same order
+//Shapes are immutable, adding a field follows (or creates) a transition to a child shape
+final class Shape {
+    //Fields
+    final FlexClass owner; //every class has its own root, so a shape also identifies the class and its methods
+    private final String[] fields; //field name by slot index
+    private final Map<String, Shape> transitions = new HashMap<>();
+
+    //Constructors
+    Shape(FlexClass owner) {
+        this(owner, new String[0]);
+    }
+
+    private Shape(FlexClass owner, String[] fields) {
+        this.owner = owner;
+        this.fields = fields;
+    }
+
+    //Methods
+    int slotCount() {
+        return fields.length;
+    }
+
+    String fieldAt(int slot) {
+        return fields[slot];
+    }
+
+    int slotOf(String name) {
+        for (int i = 0; i < fields.length; i++) { //lexemes are interned, the equals() call is only a fallback
+            if (fields[i] == name || fields[i].equals(name)) return i;
+        }
+        return -1;
+    }
+
+    synchronized Shape withField(String name) {
+        Shape next = transitions.get(name);
+        if (next == null) {
+            String[] extended = new String[fields.length + 1];
+            System.arraycopy(fields, 0, extended, 0, fields.length);
+            extended[fields.length] = name;
+            next = new Shape(owner, extended);
+            transitions.put(name, next);
+        }
+        return next;
+    }
+}
@@ -4,28 +4,53 @@ import java.util.List;
 
 abstract class Stmt {
 	interface Visitor<R> {
+		R visitClassDclStmt(ClassDcl stmt);
 		R visitFunDclStmt(FunDcl stmt);
 		R visitVarDclStmt(VarDcl stmt);
 		R visitBlockStmt(Block stmt);
 		R visitBreakStmt(Break stmt);
+		R visitForInStmt(ForIn stmt);
 		R visitIfStmt(If stmt);
 		R visitPrintStmt(Print stmt);
 		R visitReturnStmt(Return stmt);
 		R visitWhileStmt(While stmt);
+		R visitYieldStmt(Yield stmt);
 		R visitExpressionStmt(Expression stmt);
+		R visitProbeStmt(Probe stmt);
 	}
 
 	abstract <R> R accept(Visitor<R> visitor);
 
+	static class ClassDcl extends Stmt {
+		final Token identifier;
+		final Expr.Variable superclass;
+		final List<FunDcl> methods;
+
+		ClassDcl(Token identifier, Expr.Variable superclass, List<FunDcl> methods) {
+			this.identifier = identifier;
+			this.superclass = superclass;
+			this.methods = methods;
+		}
+
+		@Override
+		<R> R accept(Visitor<R> visitor) {
+			return visitor.visitClassDclStmt(this);
+		}
+	}
+
 	static class FunDcl extends Stmt {
 		final Token identifier;
 		final List<Token> parameters;
-		final List<Stmt> body;
+		List<Stmt> body;
+		final boolean isGenerator;
+		final boolean scopeEscapes;
 
-		FunDcl(Token identifier, List<Token> parameters, List<Stmt> body) {
+		FunDcl(Token identifier, List<Token> parameters, List<Stmt> body, boolean isGenerator, boolean scopeEscapes) {
 			this.identifier = identifier;
 			this.parameters = parameters;
 			this.body = body;
+			this.isGenerator = isGenerator;
+			this.scopeEscapes = scopeEscapes;
 		}
 
 		@Override
@@ -51,9 +76,11 @@ abstract class Stmt {
 
 	static class Block extends Stmt {
 		final List<Stmt> statements;
+		final boolean scopeEscapes;
 
-		Block(List<Stmt> statements) {
+		Block(List<Stmt> statements, boolean scopeEscapes) {
 			this.statements = statements;
+			this.scopeEscapes = scopeEscapes;
 		}
 
 		@Override
@@ -73,10 +100,29 @@ abstract class Stmt {
 		}
 	}
 
+	static class ForIn extends Stmt {
+		final Token identifier;
+		final Expr iterable;
+		Stmt body;
+		final boolean scopeEscapes;
+
+		ForIn(Token identifier, Expr iterable, Stmt body, boolean scopeEscapes) {
+			this.identifier = identifier;
+			this.iterable = iterable;
+			this.body = body;
+			this.scopeEscapes = scopeEscapes;
+		}
+
+		@Override
+		<R> R accept(Visitor<R> visitor) {
+			return visitor.visitForInStmt(this);
+		}
+	}
+
 	static class If extends Stmt {
 		final Expr condition;
-		final Stmt thenBranch;
-		final Stmt elseBranch;
+		Stmt thenBranch;
+		Stmt elseBranch;
 
 		If(Expr condition, Stmt thenBranch, Stmt elseBranch) {
 			this.condition = condition;
@@ -122,10 +168,12 @@ abstract class Stmt {
 	}
 
 	static class While extends Stmt {
+		final Token keyword;
 		final Expr condition;
-		final Stmt body;
+		Stmt body;
 
-		While(Expr condition, Stmt body) {
+		While(Token keyword, Expr condition, Stmt body) {
+			this.keyword = keyword;
 			this.condition = condition;
 			this.body = body;
 		}
@@ -136,6 +184,21 @@ abstract class Stmt {
 		}
 	}
 
+	static class Yield extends Stmt {
+		final Token keyword;
+		final Expr value;
+
+		Yield(Token keyword, Expr value) {
+			this.keyword = keyword;
+			this.value = value;
+		}
+
+		@Override
+		<R> R accept(Visitor<R> visitor) {
+			return visitor.visitYieldStmt(this);
+		}
+	}
+
 	static class Expression extends Stmt {
 		final Expr expression;
 
@@ -149,4 +212,19 @@ abstract class Stmt {
 		}
 	}
 
+	static class Probe extends Stmt {
+		final FlexProbe probe;
+		final List<Stmt> statements;
+
+		Probe(FlexProbe probe, List<Stmt> statements) {
+			this.probe = probe;
+			this.statements = statements;
+		}
+
+		@Override
+		<R> R accept(Visitor<R> visitor) {
+			return visitor.visitProbeStmt(this);
+		}
+	}
+
 }
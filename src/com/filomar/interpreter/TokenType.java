@@ -2,8 +2,8 @@ package com.filomar.interpreter;
 
 public enum TokenType {
     //single character tokens
-    LEFT_PAREN, RIGHT_PAREN, LEFT_BRACE, RIGHT_BRACE,
-    COMMA, DOT, SEMICOLON, MINUS, MODULUS, PLUS, SLASH, STAR,
+    LEFT_PAREN, RIGHT_PAREN, LEFT_BRACE, RIGHT_BRACE, LEFT_BRACKET, RIGHT_BRACKET,
+    COLON, COMMA, DOT, SEMICOLON, MINUS, MODULUS, PLUS, SLASH, STAR,
     // One or two character tokens.
     BANG, BANG_EQUAL,
     EQUAL, EQUAL_EQUAL,
@@ -12,8 +12,8 @@ public enum TokenType {
     // Literals.
     IDENTIFIER, STRING, NUMBER,
     // Keywords.
-    AND, BREAK, CLASS, ELSE, FALSE, FUN, FOR, IF, NULL, OR,
-    PRINT, RETURN, SUPER, THIS, TRUE, VAR, WHILE,
+    AND, BREAK, CLASS, ELSE, FALSE, FUN, FOR, IF, IN, NULL, OR,
+    PRINT, RETURN, SUPER, THIS, TRUE, VAR, WHILE, YIELD,
 
     EOF
 }
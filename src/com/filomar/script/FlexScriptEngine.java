@@ -0,0 +1,277 @@
+package com.filomar.script;
+
+import com.filomar.interpreter.FlexContext;
+import com.filomar.interpreter.FlexProgram;
+
+import javax.script.AbstractScriptEngine;
+import javax.script.Bindings;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
+import javax.script.Invocable;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineFactory;
+import javax.script.ScriptException;
+import javax.script.SimpleBindings;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+//JSR-223 front end: sources are compiled once into FlexPrograms and run against a FlexContext bound to the engine scope
+//Bindings created by this engine keep their context between evaluations, so functions and classes stay invocable,
+//any other Bindings get a fresh context per evaluation. Scope entries are copied into the globals before running,
+//for a kept context only the ones the host changed or removed since, and every global the script leaves behind is copied back
+//Values leave the script through FlexContext.toJava, so hosts get lists and maps instead of interpreter types
+public class FlexScriptEngine extends AbstractScriptEngine implements Compilable, Invocable {
+    //Fields
+    private final ScriptEngineFactory factory;
+
+    //Constructors
+    FlexScriptEngine(ScriptEngineFactory factory) {
+        this.factory = factory;
+        this.context.setBindings(createBindings(), ScriptContext.ENGINE_SCOPE);
+    }
+
+    //Methods
+    //--ScriptEngine
+    @Override
+    public Object eval(String script, ScriptContext context) throws ScriptException {
+        return execute(compileProgram(script), context);
+    }
+
+    @Override
+    public Object eval(Reader reader, ScriptContext context) throws ScriptException {
+        return eval(readAll(reader), context);
+    }
+
+    @Override
+    public Bindings createBindings() {
+        return new FlexBindings();
+    }
+
+    @Override
+    public ScriptEngineFactory getFactory() {
+        return factory;
+    }
+
+    //--Compilable
+    @Override
+    public CompiledScript compile(String script) throws ScriptException {
+        return new FlexCompiledScript(this, compileProgram(script));
+    }
+
+    @Override
+    public CompiledScript compile(Reader reader) throws ScriptException {
+        return compile(readAll(reader));
+    }
+
+    //--Invocable
+    @Override
+    public Object invokeFunction(String name, Object... arguments) throws ScriptException, NoSuchMethodException {
+        FlexContext flex = contextFor(this.context);
+        if (!flex.isDefined(name)) throw new NoSuchMethodException(name);
+        return FlexContext.toJava(checked(flex, flex.invoke(flex.lookup(name), Arrays.asList(arguments))));
+    }
+
+    @Override
+    public Object invokeMethod(Object instance, String name, Object... arguments) throws ScriptException, NoSuchMethodException {
+        FlexContext flex = contextFor(this.context);
+        try {
+            return FlexContext.toJava(checked(flex, flex.invokeMethod(instance, name, Arrays.asList(arguments))));
+        } catch (IllegalArgumentException e) {
+            throw new NoSuchMethodException(e.getMessage());
+        }
+    }
+
+    @Override
+    public <T> T getInterface(Class<T> type) {
+        return proxy(type, null);
+    }
+
+    @Override
+    public <T> T getInterface(Object instance, Class<T> type) {
+        if (instance == null) throw new IllegalArgumentException("instance cannot be null");
+        return proxy(type, instance);
+    }
+
+    //--Execution
+    Object execute(FlexProgram program, ScriptContext context) throws ScriptException {
+        FlexContext flex = contextFor(context);
+
+        Bindings global = context.getBindings(ScriptContext.GLOBAL_SCOPE);
+        Bindings engine = context.getBindings(ScriptContext.ENGINE_SCOPE);
+        if (engine instanceof FlexBindings bindings) { //redefining a global replaces its cell and invalidates cached sites
+            bindings.pushChanges(flex, global);
+        } else {
+            if (global != null) global.forEach(flex::define);
+            if (engine != null) engine.forEach(flex::define);
+        }
+
+        int status = flex.execute(program);
+        if (engine instanceof FlexBindings bindings) bindings.pullGlobals(flex);
+        else if (engine != null) flex.globals().forEach((name, value) -> engine.put(name, FlexContext.toJava(value)));
+        if (status == FlexContext.EXIT_RUNTIME_ERROR) throw new ScriptException(flex.lastRuntimeError());
+        return null; //statements produce no value
+    }
+
+    private FlexContext contextFor(ScriptContext context) {
+        Bindings engine = context.getBindings(ScriptContext.ENGINE_SCOPE);
+        if (engine instanceof FlexBindings bindings) return bindings.context(context);
+        return new FlexContext(new WriterOutputStream(context.getWriter()), new WriterOutputStream(context.getErrorWriter()));
+    }
+
+    private static FlexProgram compileProgram(String source) throws ScriptException {
+        FlexProgram program = FlexProgram.compile(source);
+        if (program.hasErrors()) throw new ScriptException(String.join(System.lineSeparator(), program.errors()));
+        return program;
+    }
+
+    private static Object checked(FlexContext flex, Object result) throws ScriptException {
+        if (flex.lastRuntimeError() != null) throw new ScriptException(flex.lastRuntimeError());
+        return result;
+    }
+
+    private static String readAll(Reader reader) throws ScriptException {
+        try {
+            StringBuilder builder = new StringBuilder();
+            char[] buffer = new char[8192];
+            for (int read; (read = reader.read(buffer)) >= 0; ) builder.append(buffer, 0, read);
+            return builder.toString();
+        } catch (IOException e) {
+            throw new ScriptException(e);
+        }
+    }
+
+    private <T> T proxy(Class<T> type, Object instance) {
+        if (type == null || !type.isInterface()) throw new IllegalArgumentException("Expected an interface type");
+
+        FlexContext flex = contextFor(this.context);
+        if (instance == null) { //the whole interface has to be implemented by the script
+            for (Method method : type.getMethods()) {
+                if (!flex.isDefined(method.getName())) return null;
+            }
+        }
+
+        Object proxy = Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, (self, method, arguments) -> {
+            if (method.getDeclaringClass() == Object.class) {
+                return switch (method.getName()) {
+                    case "equals" -> self == arguments[0];
+                    case "hashCode" -> System.identityHashCode(self);
+                    default -> type.getName() + " implemented by a Flex script";
+                };
+            }
+            List<Object> list = arguments == null ? List.of() : Arrays.asList(arguments);
+            Object result = instance == null
+                    ? flex.invoke(flex.lookup(method.getName()), list)
+                    : flex.invokeMethod(instance, method.getName(), list);
+            return FlexContext.toJava(checked(flex, result));
+        });
+        return type.cast(proxy);
+    }
+
+    //Bindings owning the FlexContext their evaluations run in
+    //Puts and removals by the host are recorded, so an evaluation only redefines the globals that actually changed
+    private static final class FlexBindings extends SimpleBindings {
+        private FlexContext context = null;
+        private WriterOutputStream out = null;
+        private WriterOutputStream err = null;
+        private final Set<String> changed = new HashSet<>();
+        private final Set<String> removed = new HashSet<>();
+        private final Map<String, Object> pushedGlobals = new HashMap<>(); //global scope values as last defined
+
+        FlexBindings() {
+            super(new HashMap<>());
+        }
+
+        @Override
+        public synchronized Object put(String name, Object value) { //putAll() goes through here too
+            changed.add(name);
+            return super.put(name, value);
+        }
+
+        @Override
+        public synchronized Object remove(Object key) {
+            boolean present = containsKey(key);
+            Object value = super.remove(key);
+            if (present) {
+                changed.remove((String) key);
+                removed.add((String) key);
+            }
+            return value;
+        }
+
+        @Override
+        public synchronized void clear() {
+            removed.addAll(keySet());
+            changed.clear();
+            super.clear();
+        }
+
+        synchronized FlexContext context(ScriptContext scriptContext) {
+            if (context == null) {
+                out = new WriterOutputStream(scriptContext.getWriter());
+                err = new WriterOutputStream(scriptContext.getErrorWriter());
+                context = new FlexContext(out, err);
+                return context;
+            }
+            try { //output follows the writers of the current ScriptContext
+                out.redirect(scriptContext.getWriter());
+                err.redirect(scriptContext.getErrorWriter());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return context;
+        }
+
+        synchronized void pushChanges(FlexContext flex, Bindings global) {
+            for (String name : removed) { //a global scope value it shadowed is defined again below
+                flex.undefine(name);
+                pushedGlobals.remove(name);
+            }
+            removed.clear();
+            if (global != null) {
+                for (Map.Entry<String, Object> binding : global.entrySet()) {
+                    String name = binding.getKey();
+                    if (containsKey(name)) continue; //the engine scope wins
+                    if (pushedGlobals.containsKey(name) && pushedGlobals.get(name) == binding.getValue()) continue;
+                    pushedGlobals.put(name, binding.getValue());
+                    flex.define(name, binding.getValue());
+                }
+            }
+            for (String name : changed) flex.define(name, get(name));
+            changed.clear();
+        }
+
+        synchronized void pullGlobals(FlexContext flex) { //not changes made by the host
+            for (Map.Entry<String, Object> binding : flex.globals().entrySet()) super.put(binding.getKey(), FlexContext.toJava(binding.getValue()));
+        }
+    }
+
+    private static final class FlexCompiledScript extends CompiledScript {
+        private final FlexScriptEngine engine;
+        private final FlexProgram program; //shared by every evaluation, never re-parsed
+
+        FlexCompiledScript(FlexScriptEngine engine, FlexProgram program) {
+            this.engine = engine;
+            this.program = program;
+        }
+
+        @Override
+        public Object eval(ScriptContext context) throws ScriptException {
+            return engine.execute(program, context);
+        }
+
+        @Override
+        public ScriptEngine getEngine() {
+            return engine;
+        }
+    }
+}
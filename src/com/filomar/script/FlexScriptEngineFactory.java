@@ -0,0 +1,82 @@
+package com.filomar.script;
+
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineFactory;
+import java.util.List;
+import java.util.stream.Collectors;
+
+//Registered through META-INF/services, makes new ScriptEngineManager().getEngineByName("flex") work
+public class FlexScriptEngineFactory implements ScriptEngineFactory {
+    //Fields
+    private static final List<String> NAMES = List.of("flex", "jflex", "Flex");
+    private static final List<String> EXTENSIONS = List.of("flx");
+    private static final List<String> MIME_TYPES = List.of("application/x-flex", "text/x-flex");
+
+    //Methods
+    @Override
+    public String getEngineName() {
+        return "jFlex";
+    }
+
+    @Override
+    public String getEngineVersion() {
+        return "1.0";
+    }
+
+    @Override
+    public List<String> getExtensions() {
+        return EXTENSIONS;
+    }
+
+    @Override
+    public List<String> getMimeTypes() {
+        return MIME_TYPES;
+    }
+
+    @Override
+    public List<String> getNames() {
+        return NAMES;
+    }
+
+    @Override
+    public String getLanguageName() {
+        return "Flex";
+    }
+
+    @Override
+    public String getLanguageVersion() {
+        return "1.0";
+    }
+
+    @Override
+    public Object getParameter(String key) {
+        return switch (key) {
+            case ScriptEngine.ENGINE -> getEngineName();
+            case ScriptEngine.ENGINE_VERSION -> getEngineVersion();
+            case ScriptEngine.NAME -> NAMES.get(0);
+            case ScriptEngine.LANGUAGE -> getLanguageName();
+            case ScriptEngine.LANGUAGE_VERSION -> getLanguageVersion();
+            default -> null; //"THREADING": an engine and its bindings run one script at a time, compiled scripts can be shared
+        };
+    }
+
+    @Override
+    public String getMethodCallSyntax(String object, String method, String... arguments) {
+        return object + "." + method + "(" + String.join(", ", arguments) + ")";
+    }
+
+    @Override
+    public String getOutputStatement(String toDisplay) {
+        return "print \"" + toDisplay + "\";";
+    }
+
+    @Override
+    public String getProgram(String... statements) {
+        return List.of(statements).stream().map(statement -> statement + ";").collect(Collectors.joining(System.lineSeparator()));
+    }
+
+    @Override
+    public ScriptEngine getScriptEngine() {
+        return new FlexScriptEngine(this);
+    }
+}
@@ -0,0 +1,68 @@
+package com.filomar.script;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+
+//Adapts a ScriptContext writer to the byte sinks FlexContext expects, decoding with the platform charset
+//Incomplete multi-byte sequences at the end of a write are kept until the rest arrives
+//The writer can be swapped between evaluations, a context outlives the ScriptContext it was first used with
+final class WriterOutputStream extends OutputStream {
+    //Fields
+    private Writer writer;
+    private final CharsetDecoder decoder = Charset.defaultCharset().newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final ByteBuffer pending = ByteBuffer.allocate(256);
+    private final CharBuffer decoded = CharBuffer.allocate(1024);
+
+    //Constructors
+    WriterOutputStream(Writer writer) {
+        this.writer = writer;
+    }
+
+    //Methods
+    synchronized void redirect(Writer writer) throws IOException {
+        if (writer == this.writer) return;
+        this.writer.flush();
+        this.writer = writer;
+    }
+
+    @Override
+    public synchronized void write(int b) throws IOException {
+        write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public synchronized void write(byte[] bytes, int offset, int length) throws IOException {
+        while (length > 0) {
+            int chunk = Math.min(length, pending.remaining());
+            pending.put(bytes, offset, chunk);
+            offset += chunk;
+            length -= chunk;
+            decodePending();
+        }
+    }
+
+    @Override
+    public synchronized void flush() throws IOException {
+        writer.flush();
+    }
+
+    private void decodePending() throws IOException {
+        pending.flip();
+        for (;;) {
+            boolean overflow = decoder.decode(pending, decoded, false).isOverflow();
+            decoded.flip();
+            writer.append(decoded);
+            decoded.clear();
+            if (!overflow) break;
+        }
+        pending.compact();
+    }
+}
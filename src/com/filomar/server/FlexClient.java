@@ -0,0 +1,63 @@
+package com.filomar.server;
+
+import com.filomar.server.FlexProtocol.Frame;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+//Thin launcher for FlexServer: sends one script, replays its output and exits with its status
+public class FlexClient {
+    //Methods
+    //--Main
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.out.println("Usage: jflex-client <socket> <script | ->");
+            System.exit(64);
+        }
+
+        int status;
+        if (args[1].equals("-")) { //source piped on stdin
+            status = run(Path.of(args[0]), FlexProtocol.SOURCE, System.in.readAllBytes());
+        } else { //the server may run from another directory
+            status = run(Path.of(args[0]), FlexProtocol.PATH, Path.of(args[1]).toAbsolutePath().toString().getBytes(StandardCharsets.UTF_8));
+        }
+        if (status != 0) System.exit(status);
+    }
+
+    static int run(Path socketPath, byte kind, byte[] payload) throws IOException {
+        try (SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+            channel.connect(UnixDomainSocketAddress.of(socketPath));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+            DataInputStream in = new DataInputStream(Channels.newInputStream(channel));
+
+            FlexProtocol.writeFrame(out, kind, payload, 0, payload.length);
+            out.flush();
+
+            for (;;) {
+                Frame frame = FlexProtocol.readFrame(in);
+                switch (frame.kind()) {
+                    case FlexProtocol.STDOUT -> System.out.write(frame.payload());
+                    case FlexProtocol.STDERR -> {
+                        System.out.flush();
+                        System.err.write(frame.payload());
+                        System.err.flush();
+                    }
+                    case FlexProtocol.EXIT -> {
+                        System.out.flush();
+                        return ByteBuffer.wrap(frame.payload()).getInt();
+                    }
+                    default -> throw new IOException("Unexpected frame kind " + (char) frame.kind());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.filomar.server;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+
+//Framing shared by FlexServer and FlexClient, every frame is: kind byte, payload length int, payload bytes
+//Client -> server: a single PATH or SOURCE frame
+//Server -> client: any number of STDOUT/STDERR frames in production order, then one EXIT frame with the status int
+final class FlexProtocol {
+    //Fields
+    static final byte PATH = 'P';
+    static final byte SOURCE = 'S';
+    static final byte STDOUT = 'O';
+    static final byte STDERR = 'E';
+    static final byte EXIT = 'X';
+
+    static final int EXIT_NO_INPUT = 66; //sysexits EX_NOINPUT, the requested script could not be read
+    static final int EXIT_PROTOCOL_ERROR = 76; //sysexits EX_PROTOCOL
+    static final int MAX_PAYLOAD = 64 << 20;
+
+    //Constructors
+    private FlexProtocol() {}
+
+    //Methods
+    static void writeFrame(DataOutputStream out, byte kind, byte[] payload, int offset, int length) throws IOException {
+        synchronized (out) { //stdout, stderr and the exit status may come from different threads
+            out.writeByte(kind);
+            out.writeInt(length);
+            out.write(payload, offset, length);
+        }
+    }
+
+    static void writeExit(DataOutputStream out, int status) throws IOException {
+        synchronized (out) {
+            out.writeByte(EXIT);
+            out.writeInt(Integer.BYTES);
+            out.writeInt(status);
+            out.flush();
+        }
+    }
+
+    static Frame readFrame(DataInputStream in) throws IOException {
+        int kind = in.read();
+        if (kind < 0) throw new EOFException("Connection closed");
+        int length = in.readInt();
+        if (length < 0 || length > MAX_PAYLOAD) throw new IOException("Invalid frame length " + length);
+        byte[] payload = new byte[length];
+        in.readFully(payload);
+        return new Frame((byte) kind, payload);
+    }
+
+    record Frame(byte kind, byte[] payload) {}
+
+    //Output stream turning every write into a frame of the given kind
+    static final class FrameOutputStream extends OutputStream {
+        private final DataOutputStream out;
+        private final byte kind;
+
+        FrameOutputStream(DataOutputStream out, byte kind) {
+            this.out = out;
+            this.kind = kind;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (len > 0) writeFrame(out, kind, b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            synchronized (out) {
+                out.flush();
+            }
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.filomar.server;
+
+import com.filomar.interpreter.FlexContext;
+import com.filomar.server.FlexProtocol.Frame;
+import com.filomar.server.FlexProtocol.FrameOutputStream;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+//Resident interpreter process, keeps one warmed-up JVM serving scripts over a Unix-domain socket
+//Every request runs on its own virtual thread in a fresh FlexContext, so requests never see each other's globals
+public class FlexServer {
+    //Fields
+    private final Path socketPath;
+
+    //Constructors
+    public FlexServer(Path socketPath) {
+        this.socketPath = socketPath;
+    }
+
+    //Methods
+    //--Main
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.out.println("Usage: jflex-server <socket>");
+            System.exit(64);
+        }
+        new FlexServer(Path.of(args[0])).serve();
+    }
+
+    //--Serving
+    public void serve() throws IOException {
+        Files.deleteIfExists(socketPath); //left behind by a server that was killed
+        try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            server.bind(UnixDomainSocketAddress.of(socketPath));
+            Runtime.getRuntime().addShutdownHook(new Thread(this::removeSocket));
+            System.err.println("jflex server listening on " + socketPath);
+
+            for (;;) {
+                SocketChannel client = server.accept();
+                Thread.ofVirtual().name("flex-request").start(() -> handle(client));
+            }
+        } finally {
+            removeSocket();
+        }
+    }
+
+    private void handle(SocketChannel client) {
+        try (client) {
+            DataInputStream in = new DataInputStream(Channels.newInputStream(client));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(client)));
+            FrameOutputStream stderr = new FrameOutputStream(out, FlexProtocol.STDERR);
+
+            int status;
+            try {
+                status = execute(FlexProtocol.readFrame(in), out, stderr);
+            } catch (RuntimeException | StackOverflowError e) { //the interpreter crashed, the client still gets told, other requests keep being served
+                System.err.println("jflex server: request failed: " + e);
+                byte[] message = ("Internal interpreter error: " + e + System.lineSeparator()).getBytes(Charset.defaultCharset());
+                stderr.write(message, 0, message.length);
+                status = FlexContext.EXIT_RUNTIME_ERROR;
+            }
+            FlexProtocol.writeExit(out, status);
+        } catch (IOException e) { //the client went away, nothing left to report to
+        }
+    }
+
+    private static int execute(Frame request, DataOutputStream out, FrameOutputStream stderr) throws IOException {
+        String source = switch (request.kind()) {
+            case FlexProtocol.SOURCE -> new String(request.payload(), Charset.defaultCharset());
+            case FlexProtocol.PATH -> readScript(new String(request.payload(), StandardCharsets.UTF_8), stderr);
+            default -> null;
+        };
+        if (source == null) return request.kind() == FlexProtocol.PATH ? FlexProtocol.EXIT_NO_INPUT : FlexProtocol.EXIT_PROTOCOL_ERROR;
+
+        FlexContext context = new FlexContext(new FrameOutputStream(out, FlexProtocol.STDOUT), stderr);
+        try {
+            return context.run(source);
+        } finally {
+            context.flush(); //whatever was printed before a crash still reaches the client
+        }
+    }
+
+    private static String readScript(String path, FrameOutputStream stderr) throws IOException {
+        try {
+            return new String(Files.readAllBytes(Path.of(path)), Charset.defaultCharset());
+        } catch (IOException e) {
+            byte[] message = ("Cannot read script " + path + System.lineSeparator()).getBytes(Charset.defaultCharset());
+            stderr.write(message, 0, message.length);
+            return null;
+        }
+    }
+
+    private void removeSocket() {
+        try {
+            Files.deleteIfExists(socketPath);
+        } catch (IOException ignored) {
+        }
+    }
+}
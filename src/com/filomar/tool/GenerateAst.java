@@ -2,6 +2,7 @@ package com.filomar.tool;
 
 import java.io.*;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
@@ -11,29 +12,49 @@ public class GenerateAst {
             System.out.println("Usage: GenerateAst <output directory>");
             System.exit(64);
         }
-        defineAst(args[0], "com.filomar.interpreter", "Expr", Arrays.asList(
-                "Assign   : Token identifier, Expr expression",
+        List<String> exprTypes = Arrays.asList(
+                "Assign   : Token identifier, Expr expression, GlobalCache cache",
                 "Logical  : Expr left, Token operator, Expr right", //introduced a new class for logical operations to allow short-circuiting without modifying Binary class code
                 "Binary   : Expr left, Token operator, Expr right",
                 "Unary    : Token operator, Expr expression",
                 "Call     : Expr callee, Token paren, List<Expr> arguments",
+                "ListLiteral : Token bracket, List<Expr> elements",
+                "Index       : Expr object, Token bracket, Expr index",
+                "IndexAssign : Expr object, Token bracket, Expr index, Expr value",
+                "DictLiteral : Token brace, List<Expr> keys, List<Expr> values",
+                "Get         : Expr object, Token identifier, PropertyCache cache",
+                "Set         : Expr object, Token identifier, Expr value, PropertyCache cache",
+                "This        : Token keyword",
+                "Super       : Token keyword, Token method",
                 "Literal  : Object value",
-                "Variable : Token identifier",
+                "Variable : Token identifier, GlobalCache cache",
                 "Grouping : Expr expression"
-                ));
-        defineAst(args[0], "com.filomar.interpreter", "Stmt", Arrays.asList(
+                );
+        List<String> stmtTypes = Arrays.asList(
                 //low-priority statements (aka: declarations)
-                "FunDcl     : Token identifier, List<Token> parameters, List<Stmt> body",
+                "ClassDcl   : Token identifier, Expr.Variable superclass, List<FunDcl> methods",
+                "FunDcl     : Token identifier, List<Token> parameters, List<Stmt> body, boolean isGenerator, boolean scopeEscapes",
                 "VarDcl     : Token identifier, Expr initializer",
                 //high-priority statements (aka: statements)
-                "Block      : List<Stmt> statements",
+                "Block      : List<Stmt> statements, boolean scopeEscapes",
                 "Break      : ",
+                "ForIn      : Token identifier, Expr iterable, Stmt body, boolean scopeEscapes",
                 "If         : Expr condition, Stmt thenBranch, Stmt elseBranch",
                 "Print      : Expr value",
                 "Return     : Expr value",
-                "While      : Expr condition, Stmt body",
+                "While      : Token keyword, Expr condition, Stmt body",
+                "Yield      : Token keyword, Expr value",
                 "Expression : Expr expression"
-                ));
+                );
+        List<String> runtimeStmtTypes = Arrays.asList( //instrumentation wrappers, swapped into the tree while attached and never saved in images
+                "Probe      : FlexProbe probe, List<Stmt> statements"
+                );
+        List<String> allStmtTypes = new ArrayList<>(stmtTypes);
+        allStmtTypes.addAll(runtimeStmtTypes);
+
+        defineAst(args[0], "com.filomar.interpreter", "Expr", exprTypes);
+        defineAst(args[0], "com.filomar.interpreter", "Stmt", allStmtTypes);
+        defineCodec(args[0], "com.filomar.interpreter", exprTypes, stmtTypes);
     }
 
     private static void defineAst(String outputDir, String packageName, String baseClass, List<String> subclasses) throws IOException {
@@ -78,8 +99,8 @@ public class GenerateAst {
         if (!fieldList.isEmpty()) {
             fields = fieldList.split(", ");
         }
-        for (String field : fields)
-            writer.println("\t\tfinal " + field + ";");
+        for (String field : fields) //single statement children and function bodies stay assignable, instrumentation swaps probes in and out of them
+            writer.println("\t\t" + (field.startsWith("Stmt ") || field.equals("List<Stmt> body") ? "" : "final ") + field + ";");
 
         writer.println("\n\t\t" + className + "(" + fieldList + ") {");
         for (String field : fields)
@@ -93,4 +114,99 @@ public class GenerateAst {
 
         writer.println("\t}\n");
     }
+
+    //Image codec, node tags follow declaration order and start at 2: ImageWriter/ImageReader reserve 0 for null and 1 for back-references
+    private static void defineCodec(String outputDir, String packageName, List<String> exprTypes, List<String> stmtTypes) throws IOException {
+        String path = outputDir + "/AstCodec.java";
+        PrintWriter writer = new PrintWriter(path, Charset.defaultCharset());
+
+        writer.println("package " + packageName + ";\n");
+        writer.println("import java.io.IOException;\n");
+        writer.println("final class AstCodec {");
+        writer.println("\tprivate AstCodec() {}\n");
+
+        defineCodecWriter(writer, "Expr", exprTypes);
+        defineCodecWriter(writer, "Stmt", stmtTypes);
+        defineCodecReader(writer, "Expr", exprTypes);
+        defineCodecReader(writer, "Stmt", stmtTypes);
+
+        writer.println("}");
+
+        writer.close();
+    }
+
+    private static void defineCodecWriter(PrintWriter writer, String baseName, List<String> types) {
+        writer.println("\tstatic void write" + baseName + "(ImageWriter out, " + baseName + " " + baseName.toLowerCase() + ") throws IOException {");
+        writer.println("\t\tswitch (" + baseName.toLowerCase() + ") {");
+
+        int tag = 2;
+        for (String type : types) {
+            String className = type.split(":")[0].trim();
+            writer.println("\t\t\tcase " + baseName + "." + className + " node -> {");
+            writer.println("\t\t\t\tout.writeTag(" + tag++ + ");");
+            for (String field : fields(type)) {
+                String fieldType = field.split(" ")[0];
+                String fieldName = field.split(" ")[1];
+                String method = switch (fieldType) {
+                    case "Token" -> "writeToken";
+                    case "Expr", "Expr.Variable" -> "writeExpr";
+                    case "Stmt" -> "writeStmt";
+                    case "List<Expr>" -> "writeExprs";
+                    case "List<Stmt>", "List<FunDcl>" -> "writeStmts";
+                    case "List<Token>" -> "writeTokens";
+                    case "Object" -> "writeLiteral";
+                    case "boolean" -> "writeBoolean";
+                    case "PropertyCache" -> null; //caches start cold
+                    case "GlobalCache" -> "writeGlobalCache"; //...but keep what the parser proved about the site
+                    default -> throw new IllegalArgumentException("No image encoding for " + fieldType);
+                };
+                if (method != null) writer.println("\t\t\t\tout." + method + "(node." + fieldName + ");");
+            }
+            writer.println("\t\t\t}");
+        }
+
+        writer.println("\t\t\tdefault -> throw new IllegalStateException(\"Unknown " + baseName.toLowerCase() + " node \" + " + baseName.toLowerCase() + ");");
+        writer.println("\t\t}");
+        writer.println("\t}\n");
+    }
+
+    private static void defineCodecReader(PrintWriter writer, String baseName, List<String> types) {
+        writer.println("\tstatic " + baseName + " read" + baseName + "(ImageReader in, int tag) throws IOException {");
+        writer.println("\t\treturn switch (tag) {");
+
+        int tag = 2;
+        for (String type : types) {
+            String className = type.split(":")[0].trim();
+            StringBuilder arguments = new StringBuilder();
+            for (String field : fields(type)) {
+                String fieldType = field.split(" ")[0];
+                if (arguments.length() > 0) arguments.append(", ");
+                arguments.append(switch (fieldType) { //arguments are evaluated left to right, in the order they were written
+                    case "Token" -> "in.readToken()";
+                    case "Expr" -> "in.readExpr()";
+                    case "Expr.Variable" -> "(Expr.Variable) in.readExpr()";
+                    case "Stmt" -> "in.readStmt()";
+                    case "List<Expr>" -> "in.readExprs()";
+                    case "List<Stmt>" -> "in.readStmts(Stmt.class)";
+                    case "List<FunDcl>" -> "in.readStmts(Stmt.FunDcl.class)";
+                    case "List<Token>" -> "in.readTokens()";
+                    case "Object" -> "in.readLiteral()";
+                    case "boolean" -> "in.readBoolean()";
+                    case "PropertyCache" -> "new PropertyCache()";
+                    case "GlobalCache" -> "in.readGlobalCache()";
+                    default -> throw new IllegalArgumentException("No image encoding for " + fieldType);
+                });
+            }
+            writer.println("\t\t\tcase " + tag++ + " -> new " + baseName + "." + className + "(" + arguments + ");");
+        }
+
+        writer.println("\t\t\tdefault -> throw new IOException(\"Unknown " + baseName.toLowerCase() + " tag \" + tag);");
+        writer.println("\t\t};");
+        writer.println("\t}\n");
+    }
+
+    private static String[] fields(String type) {
+        String fieldList = type.split(":")[1].trim();
+        return fieldList.isEmpty() ? new String[0] : fieldList.split(", ");
+    }
 }